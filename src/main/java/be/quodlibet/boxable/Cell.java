@@ -6,8 +6,8 @@ package be.quodlibet.boxable;
 
 import be.quodlibet.boxable.line.LineStyle;
 import be.quodlibet.boxable.text.WrappingFunction;
+import be.quodlibet.boxable.utils.FontUtils;
 import java.awt.Color;
-import java.io.IOException;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
@@ -133,6 +133,7 @@ public class Cell<T extends PDPage> {
 	 */
 	public void setTextColor(Color textColor) {
 		this.textColor = textColor;
+		invalidateParagraph();
 	}
 
 	/**
@@ -156,6 +157,7 @@ public class Cell<T extends PDPage> {
 	 */
 	public void setFillColor(Color fillColor) {
 		this.fillColor = fillColor;
+		row.markChanged();
 	}
 
 	/**
@@ -215,8 +217,7 @@ public class Cell<T extends PDPage> {
 	public void setText(String text) {
 		this.text = text;
 
-		// paragraph invalidated
-		paragraph = null;
+		invalidateParagraph();
 	}
 
 	/**
@@ -250,8 +251,7 @@ public class Cell<T extends PDPage> {
 	public void setFont(PDFont font) {
 		this.font = font;
 
-		// paragraph invalidated
-		paragraph = null;
+		invalidateParagraph();
 	}
 
 	/**
@@ -276,8 +276,7 @@ public class Cell<T extends PDPage> {
 	public void setFontSize(float fontSize) {
 		this.fontSize = fontSize;
 
-		// paragraph invalidated
-		paragraph = null;
+		invalidateParagraph();
 	}
 
 	/**
@@ -314,10 +313,31 @@ public class Cell<T extends PDPage> {
 							wrappingFunction, lineSpacing);
 				}
 			}
+			paragraph.setLayoutCache(row.getLayoutCache());
 		}
 		return paragraph;
 	}
 
+	// the paragraph is laid out again on next use, the row measures this cell again
+	private void invalidateParagraph() {
+		paragraph = null;
+		invalidateHeight();
+	}
+
+	// the paragraph depends on the inner height only if the text is rotated
+	private void invalidateInnerHeight() {
+		if (textRotated) {
+			invalidateParagraph();
+		} else {
+			invalidateHeight();
+		}
+	}
+
+	// the cell's height may have changed, the row measures its cells again
+	void invalidateHeight() {
+		row.invalidateHeight();
+	}
+
 	public float getExtraWidth() {
 		return this.row.getLastCellExtraWidth() + getWidth();
 	}
@@ -359,14 +379,9 @@ public class Cell<T extends PDPage> {
 		}
 
 		if (isTextRotated()) {
-			try {
-				// TODO: maybe find more optimal way then this
-				return getFont().getStringWidth(getText()) / 1000 * getFontSize() + getTopPadding()
-						+ (getTopBorder() == null ? 0 : getTopBorder().getWidth()) + getBottomPadding()
-						+ (getBottomBorder() == null ? 0 : getBottomBorder().getWidth());
-			} catch (final IOException e) {
-				throw new IllegalStateException("Font not set.", e);
-			}
+			return FontUtils.getStringWidth(getFont(), getText(), getFontSize()) + getTopPadding()
+					+ (getTopBorder() == null ? 0 : getTopBorder().getWidth()) + getBottomPadding()
+					+ (getBottomBorder() == null ? 0 : getBottomBorder().getWidth());
 		} else {
 			return getTextHeight() + getTopPadding() + getBottomPadding()
 					+ (getTopBorder() == null ? 0 : getTopBorder().getWidth())
@@ -384,6 +399,7 @@ public class Cell<T extends PDPage> {
 	 */
 	public void setHeight(final Float height) {
 		this.height = height;
+		invalidateHeight();
 	}
 
 	/**
@@ -430,8 +446,7 @@ public class Cell<T extends PDPage> {
 	public void setLeftPadding(float cellLeftPadding) {
 		this.leftPadding = cellLeftPadding;
 
-		// paragraph invalidated
-		paragraph = null;
+		invalidateParagraph();
 	}
 
 	/**
@@ -456,8 +471,7 @@ public class Cell<T extends PDPage> {
 	public void setRightPadding(float cellRightPadding) {
 		this.rightPadding = cellRightPadding;
 
-		// paragraph invalidated
-		paragraph = null;
+		invalidateParagraph();
 	}
 
 	/**
@@ -481,6 +495,7 @@ public class Cell<T extends PDPage> {
 	 */
 	public void setTopPadding(float cellTopPadding) {
 		this.topPadding = cellTopPadding;
+		invalidateInnerHeight();
 	}
 
 	/**
@@ -504,6 +519,7 @@ public class Cell<T extends PDPage> {
 	 */
 	public void setBottomPadding(float cellBottomPadding) {
 		this.bottomPadding = cellBottomPadding;
+		invalidateInnerHeight();
 	}
 
 	/**
@@ -523,10 +539,6 @@ public class Cell<T extends PDPage> {
 	 */
 	public float getVerticalFreeSpace() {
 		if (isTextRotated()) {
-			// need to calculate max line width so we just iterating through
-			// lines
-			for (String line : getParagraph().getLines()) {
-			}
 			return getInnerHeight() - getParagraph().getMaxLineWidth();
 		} else {
 			return getInnerHeight() - getTextHeight();
@@ -570,6 +582,7 @@ public class Cell<T extends PDPage> {
 
 	public void setHeaderCell(boolean isHeaderCell) {
 		this.isHeaderCell = isHeaderCell;
+		invalidateParagraph();
 	}
 
 	public WrappingFunction getWrappingFunction() {
@@ -579,8 +592,7 @@ public class Cell<T extends PDPage> {
 	public void setWrappingFunction(WrappingFunction wrappingFunction) {
 		this.wrappingFunction = wrappingFunction;
 
-		// paragraph invalidated
-		paragraph = null;
+		invalidateParagraph();
 	}
 
 	public LineStyle getLeftBorder() {
@@ -601,18 +613,22 @@ public class Cell<T extends PDPage> {
 
 	public void setLeftBorderStyle(LineStyle leftBorder) {
 		this.leftBorderStyle = leftBorder;
+		invalidateParagraph();
 	}
 
 	public void setRightBorderStyle(LineStyle rightBorder) {
 		this.rightBorderStyle = rightBorder;
+		invalidateParagraph();
 	}
 
 	public void setTopBorderStyle(LineStyle topBorder) {
 		this.topBorderStyle = topBorder;
+		invalidateInnerHeight();
 	}
 
 	public void setBottomBorderStyle(LineStyle bottomBorder) {
 		this.bottomBorderStyle = bottomBorder;
+		invalidateInnerHeight();
 	}
 
 	/**
@@ -628,6 +644,7 @@ public class Cell<T extends PDPage> {
 		this.rightBorderStyle = border;
 		this.topBorderStyle = border;
 		this.bottomBorderStyle = border;
+		invalidateParagraph();
 	}
 
 	public boolean isTextRotated() {
@@ -636,6 +653,7 @@ public class Cell<T extends PDPage> {
 
 	public void setTextRotated(boolean textRotated) {
 		this.textRotated = textRotated;
+		invalidateParagraph();
 	}
 
 	public PDFont getFontBold() {
@@ -653,6 +671,7 @@ public class Cell<T extends PDPage> {
 	 */
 	public void setFontBold(final PDFont fontBold) {
 		this.fontBold = fontBold;
+		invalidateParagraph();
 	}
 
 	public boolean isColspanCell() {
@@ -661,14 +680,17 @@ public class Cell<T extends PDPage> {
 
 	public void setColspanCell(boolean isColspanCell) {
 		this.isColspanCell = isColspanCell;
+		row.markChanged();
 	}
 
 	public void setAlign(HorizontalAlignment align) {
 		this.align = align;
+		invalidateParagraph();
 	}
 
 	public void setValign(VerticalAlignment valign) {
 		this.valign = valign;
+		row.markChanged();
 	}
 
 	/**
@@ -692,6 +714,7 @@ public class Cell<T extends PDPage> {
 		setTextColor(sourceCell.getTextColor());
 		setAlign(sourceCell.getAlign());
 		setValign(sourceCell.getValign());
+		invalidateParagraph();
 	}
 
 	/**
@@ -729,6 +752,7 @@ public class Cell<T extends PDPage> {
 
 	public void setWidth(float width) {
 		this.width = width;
+		invalidateParagraph();
 	}
 
 	public float getLineSpacing() {
@@ -737,6 +761,7 @@ public class Cell<T extends PDPage> {
 
 	public void setLineSpacing(float lineSpacing) {
 		this.lineSpacing = lineSpacing;
+		invalidateParagraph();
 	}
 
 }
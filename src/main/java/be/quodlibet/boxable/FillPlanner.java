@@ -0,0 +1,51 @@
+package be.quodlibet.boxable;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
+
+/**
+ * <p>
+ * Collects the background rectangles of the cells of a row and fills them
+ * grouped by color, so every color is set once and filled with a single
+ * operator. A rectangle which continues the previous rectangle of the same
+ * color on the same line and with the same height is merged into it.
+ * </p>
+ */
+final class FillPlanner {
+
+	// rectangles as { x, y, width, height } by color, in the order the colors were added
+	private final Map<Color, List<float[]>> fills = new LinkedHashMap<>();
+
+	void addRect(final float x, final float y, final float width, final float height, final Color color) {
+		List<float[]> rects = fills.get(color);
+		if (rects == null) {
+			rects = new ArrayList<>();
+			fills.put(color, rects);
+		}
+		if (!rects.isEmpty()) {
+			final float[] last = rects.get(rects.size() - 1);
+			if (last[1] == y && last[3] == height && last[0] + last[2] == x) {
+				last[2] += width;
+				return;
+			}
+		}
+		rects.add(new float[] { x, y, width, height });
+	}
+
+	void draw(final PageContentStreamOptimized stream) throws IOException {
+		for (final Map.Entry<Color, List<float[]>> entry : fills.entrySet()) {
+			stream.setNonStrokingColor(entry.getKey());
+			for (final float[] rect : entry.getValue()) {
+				stream.addRect(rect[0], rect[1], rect[2], rect[3]);
+			}
+			stream.fill();
+		}
+		fills.clear();
+	}
+}
@@ -24,6 +24,7 @@ public class ImageCell<T extends PDPage> extends Cell<T> {
 
 	public void scaleToFit() {
 		img = img.scale(getInnerWidth());
+		invalidateHeight();
 	}
 
 	ImageCell(Row<T> row, float width, Image image, boolean isCalculated, HorizontalAlignment align,
@@ -0,0 +1,141 @@
+/*
+ Quodlibet.be
+ */
+package be.quodlibet.boxable;
+
+import java.util.Objects;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import be.quodlibet.boxable.text.WrappingFunction;
+
+/**
+ * <p>
+ * Size-bounded cache of {@link LayoutResult}s shared by many
+ * {@link Paragraph}s. Paragraphs with the same text, font, font size, width,
+ * wrapping function, line spacing and alignment reuse a single layout instead
+ * of laying out the text again.
+ * </p>
+ * <p>
+ * The cache is safe for concurrent use and evicts the least recently used
+ * layouts once {@code maximumSize} is reached. Its scope is the scope of the
+ * instance: set one instance on several {@link Table}s to share it across a
+ * document, or keep one in a static field to share it across the JVM. Note
+ * that cached entries keep their {@link PDFont} reachable until they are
+ * evicted.
+ * </p>
+ *
+ * @see Table#setLayoutCache(LayoutCache)
+ * @see Paragraph#setLayoutCache(LayoutCache)
+ */
+public final class LayoutCache {
+
+	private final Cache<Key, LayoutResult> layouts;
+
+	/**
+	 * <p>
+	 * Constructs a cache holding at most designated number of layouts.
+	 * </p>
+	 *
+	 * @param maximumSize
+	 *            maximal number of cached layouts
+	 */
+	public LayoutCache(final long maximumSize) {
+		this.layouts = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+	}
+
+	LayoutResult get(final Paragraph paragraph) {
+		final Key key = new Key(paragraph);
+		LayoutResult layout = layouts.getIfPresent(key);
+		if (layout == null) {
+			// concurrent misses for the same key compute the same immutable layout, the last one wins
+			layout = paragraph.computeLayout();
+			layouts.put(key, layout);
+		}
+		return layout;
+	}
+
+	/**
+	 * @return number of layouts which were found in this cache
+	 */
+	public long getHitCount() {
+		return layouts.stats().hitCount();
+	}
+
+	/**
+	 * @return number of layouts which had to be computed
+	 */
+	public long getMissCount() {
+		return layouts.stats().missCount();
+	}
+
+	/**
+	 * @return ratio of layouts found in this cache, {@code 1.0} if nothing was
+	 *         requested yet
+	 */
+	public double getHitRate() {
+		return layouts.stats().hitRate();
+	}
+
+	/**
+	 * @return number of layouts currently cached
+	 */
+	public long size() {
+		return layouts.size();
+	}
+
+	/**
+	 * <p>
+	 * Discards all cached layouts. The hit and miss counters are kept.
+	 * </p>
+	 */
+	public void clear() {
+		layouts.invalidateAll();
+	}
+
+	private static final class Key {
+
+		private final String text;
+		private final PDFont font;
+		private final float fontSize;
+		private final float width;
+		private final WrappingFunction wrappingFunction;
+		private final float lineSpacing;
+		private final HorizontalAlignment align;
+		private final int hashCode;
+
+		Key(final Paragraph paragraph) {
+			this.text = paragraph.getText();
+			this.font = paragraph.getFont();
+			this.fontSize = paragraph.getFontSize();
+			this.width = paragraph.getWidth();
+			this.wrappingFunction = paragraph.getWrappingFunction();
+			this.lineSpacing = paragraph.getLineSpacing();
+			this.align = paragraph.getAlign();
+			this.hashCode = Objects.hash(text, font, fontSize, width, wrappingFunction, lineSpacing, align);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return hashCode == other.hashCode && Float.compare(fontSize, other.fontSize) == 0
+					&& Float.compare(width, other.width) == 0 && Float.compare(lineSpacing, other.lineSpacing) == 0
+					&& align == other.align && wrappingFunction == other.wrappingFunction
+					&& Objects.equals(font, other.font) && Objects.equals(text, other.text);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ Quodlibet.be
+ */
+package be.quodlibet.boxable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import be.quodlibet.boxable.text.Token;
+
+/**
+ * <p>
+ * Immutable result of laying out a {@link Paragraph}: the wrapped lines, the
+ * width and the tokens of every line, the widest line and the overall height.
+ * </p>
+ * <p>
+ * A {@link Paragraph} computes its layout once and keeps it until one of the
+ * inputs that affect line breaking changes.
+ * </p>
+ */
+public final class LayoutResult {
+
+	private final List<String> lines;
+
+	private final float[] lineWidths;
+
+	private final Map<Integer, List<Token>> lineTokens;
+
+	private final float maxLineWidth;
+
+	private final float height;
+
+	LayoutResult(final List<String> lines, final float[] lineWidths, final Map<Integer, List<Token>> lineTokens,
+			final float maxLineWidth, final float height) {
+		this.lines = Collections.unmodifiableList(lines);
+		this.lineWidths = lineWidths;
+		// the layout may be shared by a LayoutCache, so the token lists are read-only as well
+		final Map<Integer, List<Token>> tokens = new LinkedHashMap<>();
+		for (final Map.Entry<Integer, List<Token>> entry : lineTokens.entrySet()) {
+			tokens.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+		}
+		this.lineTokens = Collections.unmodifiableMap(tokens);
+		this.maxLineWidth = maxLineWidth;
+		this.height = height;
+	}
+
+	/**
+	 * @return the wrapped lines of text
+	 */
+	public List<String> getLines() {
+		return lines;
+	}
+
+	/**
+	 * @return number of wrapped lines
+	 */
+	public int getLineCount() {
+		return lines.size();
+	}
+
+	/**
+	 * @param line
+	 *            index of the line
+	 * @return trimmed width of the designated line
+	 */
+	public float getLineWidth(int line) {
+		return lineWidths[line];
+	}
+
+	/**
+	 * @return tokens of each line, keyed by line index
+	 */
+	public Map<Integer, List<Token>> getLineTokens() {
+		return lineTokens;
+	}
+
+	/**
+	 * @return width of the widest line
+	 */
+	public float getMaxLineWidth() {
+		return maxLineWidth;
+	}
+
+	/**
+	 * @return height of all lines including line spacing
+	 */
+	public float getHeight() {
+		return height;
+	}
+}
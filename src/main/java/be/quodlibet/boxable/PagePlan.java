@@ -0,0 +1,215 @@
+package be.quodlibet.boxable;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Immutable pagination of a {@link Table}'s rows, planned before they are
+ * drawn. Page {@code 0} is the page the table is currently on, every further
+ * page is started by a page break in front of one of the planned rows.
+ * </p>
+ * <p>
+ * Row heights are kept as prefix sums and pages as the index of their first
+ * row, so the page of a row and the height of a range of rows are found
+ * without walking the rows.
+ * </p>
+ *
+ * @see Table#planPages()
+ */
+public final class PagePlan {
+
+	// rowOffsets[i] is the height of rows 0 to i - 1, summed up in double precision for long tables
+	private final double[] rowOffsets;
+
+	private final float[] rowYStarts;
+
+	// first row of each page; pages may be empty, a later page then starts with the same row
+	private final int[] firstRows;
+
+	private final boolean[] headerRepeated;
+
+	// Y coordinates where each page starts and where the table ends on it
+	private final float[] pageTops;
+	private final float[] pageBottoms;
+
+	private PagePlan(final Builder builder) {
+		this.rowOffsets = Arrays.copyOf(builder.rowOffsets, builder.rowCount + 1);
+		this.rowYStarts = Arrays.copyOf(builder.rowYStarts, builder.rowCount);
+		this.firstRows = Arrays.copyOf(builder.firstRows, builder.pageCount);
+		this.headerRepeated = Arrays.copyOf(builder.headerRepeated, builder.pageCount);
+		this.pageTops = Arrays.copyOf(builder.pageTops, builder.pageCount);
+		this.pageBottoms = Arrays.copyOf(builder.pageBottoms, builder.pageCount);
+	}
+
+	/**
+	 * @return number of planned rows
+	 */
+	public int getRowCount() {
+		return rowYStarts.length;
+	}
+
+	/**
+	 * @return number of pages the planned rows are drawn on, including the
+	 *         current page
+	 */
+	public int getPageCount() {
+		return firstRows.length;
+	}
+
+	/**
+	 * @param row
+	 *            index of a planned row
+	 * @return index of the page designated row is drawn on
+	 */
+	public int getPage(final int row) {
+		checkRow(row);
+		// last page starting at or before the row
+		int low = 0;
+		int high = firstRows.length - 1;
+		while (low < high) {
+			final int middle = (low + high + 1) >>> 1;
+			if (firstRows[middle] <= row) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param page
+	 *            index of a page
+	 * @return index of the first row drawn on designated page, equal to
+	 *         {@link #getEndRow(int)} if no row is drawn on it
+	 */
+	public int getFirstRow(final int page) {
+		checkPage(page);
+		return firstRows[page];
+	}
+
+	/**
+	 * @param page
+	 *            index of a page
+	 * @return index following the last row drawn on designated page
+	 */
+	public int getEndRow(final int page) {
+		checkPage(page);
+		return page + 1 < firstRows.length ? firstRows[page + 1] : getRowCount();
+	}
+
+	/**
+	 * @param page
+	 *            index of a page
+	 * @return {@code true} if the header rows are repeated at the top of
+	 *         designated page
+	 */
+	public boolean isHeaderRepeated(final int page) {
+		checkPage(page);
+		return headerRepeated[page];
+	}
+
+	/**
+	 * @param row
+	 *            index of a planned row
+	 * @return Y coordinate of the top of designated row on its page
+	 */
+	public float getYStart(final int row) {
+		checkRow(row);
+		return rowYStarts[row];
+	}
+
+	/**
+	 * @return Y position below the table once the planned rows are drawn, the
+	 *         value {@link Table#draw()} returns
+	 */
+	public float getYEnd() {
+		return pageBottoms[pageBottoms.length - 1];
+	}
+
+	/**
+	 * @param page
+	 *            index of a page
+	 * @return height the table takes up on designated page, including the
+	 *         repeated header rows
+	 */
+	public float getUsedHeight(final int page) {
+		checkPage(page);
+		return pageTops[page] - pageBottoms[page];
+	}
+
+	/**
+	 * @param fromRow
+	 *            index of the first row, inclusive
+	 * @param toRow
+	 *            index of the last row, exclusive
+	 * @return sum of the heights of designated rows
+	 */
+	public float getHeight(final int fromRow, final int toRow) {
+		if (fromRow < 0 || toRow > getRowCount() || fromRow > toRow) {
+			throw new IndexOutOfBoundsException("Rows " + fromRow + " to " + toRow + " of " + getRowCount());
+		}
+		return (float) (rowOffsets[toRow] - rowOffsets[fromRow]);
+	}
+
+	private void checkRow(final int row) {
+		if (row < 0 || row >= getRowCount()) {
+			throw new IndexOutOfBoundsException("Row " + row + " of " + getRowCount());
+		}
+	}
+
+	private void checkPage(final int page) {
+		if (page < 0 || page >= getPageCount()) {
+			throw new IndexOutOfBoundsException("Page " + page + " of " + getPageCount());
+		}
+	}
+
+	static final class Builder {
+
+		private final double[] rowOffsets;
+		private final float[] rowYStarts;
+		private int rowCount;
+		private int[] firstRows = new int[8];
+		private boolean[] headerRepeated = new boolean[8];
+		private float[] pageTops = new float[8];
+		private float[] pageBottoms = new float[8];
+		private int pageCount = 1;
+
+		Builder(final int rows, final float yStart) {
+			this.rowOffsets = new double[rows + 1];
+			this.rowYStarts = new float[rows];
+			this.pageTops[0] = yStart;
+		}
+
+		/**
+		 * <p>
+		 * Ends the current page at {@code yEnd} and starts a new page at
+		 * {@code yStart} in front of the next row.
+		 * </p>
+		 */
+		void pageBreak(final boolean repeatHeader, final float yEnd, final float yStart) {
+			if (pageCount == firstRows.length) {
+				firstRows = Arrays.copyOf(firstRows, pageCount * 2);
+				headerRepeated = Arrays.copyOf(headerRepeated, pageCount * 2);
+				pageTops = Arrays.copyOf(pageTops, pageCount * 2);
+				pageBottoms = Arrays.copyOf(pageBottoms, pageCount * 2);
+			}
+			pageBottoms[pageCount - 1] = yEnd;
+			firstRows[pageCount] = rowCount;
+			headerRepeated[pageCount] = repeatHeader;
+			pageTops[pageCount] = yStart;
+			pageCount++;
+		}
+
+		void addRow(final float height, final float yStart) {
+			rowYStarts[rowCount] = yStart;
+			rowOffsets[rowCount + 1] = rowOffsets[rowCount] + height;
+			rowCount++;
+		}
+
+		PagePlan build(final float yEnd) {
+			pageBottoms[pageCount - 1] = yEnd;
+			return new PagePlan(this);
+		}
+	}
+}
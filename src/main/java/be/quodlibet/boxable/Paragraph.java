@@ -7,7 +7,6 @@ package be.quodlibet.boxable;
 import java.awt.Color;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,12 +16,16 @@ import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
+import be.quodlibet.boxable.text.DefaultWrappingFunction;
 import be.quodlibet.boxable.text.PipelineLayer;
 import be.quodlibet.boxable.text.Token;
+import be.quodlibet.boxable.text.TokenSpans;
 import be.quodlibet.boxable.text.TokenType;
 import be.quodlibet.boxable.text.Tokenizer;
 import be.quodlibet.boxable.text.WrappingFunction;
 import be.quodlibet.boxable.utils.FontUtils;
+import be.quodlibet.boxable.utils.GlyphMetrics;
 import be.quodlibet.boxable.utils.PDStreamUtils;
 
 public class Paragraph {
@@ -45,21 +48,29 @@ public class Paragraph {
 	private final static int BULLET_SPACE = 2;
 
 	private boolean drawDebug;
-	private final Map<Integer, Float> lineWidths = new HashMap<>();
-	private Map<Integer, List<Token>> mapLineTokens = new LinkedHashMap<>();
-	private float maxLineWidth = Integer.MIN_VALUE;
+
+	// computed lazily and invalidated whenever an input of the layout changes
+	private LayoutResult layout;
+
+	// line count and widest line only, enough for height calculations
+	private LineCollector measure;
+
+	private LayoutCache layoutCache;
 
 	public Paragraph(String text, PDFont font, float fontSize, float width, final HorizontalAlignment align) {
 		this(text, font, fontSize, width, align, null);
 	}
 
-	private static final WrappingFunction DEFAULT_WRAP_FUNC = new WrappingFunction() {
+	// tokenizer buffer, reused by all paragraphs laid out on the same thread
+	private static final ThreadLocal<TokenSpans> SPANS = new ThreadLocal<TokenSpans>() {
 		@Override
-		public String[] getLines(String t) {
-			return t.split("(?<=\\s|-|@|,|\\.|:|;)");
+		protected TokenSpans initialValue() {
+			return new TokenSpans();
 		}
 	};
 
+	private static final WrappingFunction DEFAULT_WRAP_FUNC = new DefaultWrappingFunction();
+
 	public Paragraph(String text, PDFont font, int fontSize, int width) {
 		this(text, font, fontSize, width, HorizontalAlignment.LEFT, null);
 	}
@@ -88,10 +99,64 @@ public class Paragraph {
 	}
 
 	public List<String> getLines() {
-		final List<String> result = new ArrayList<>();
-		final List<Token> tokens = Tokenizer.tokenize(text, wrappingFunction);
+		return getLayout().getLines();
+	}
+
+	/**
+	 * <p>
+	 * Retrieves the {@link LayoutResult} of this paragraph. The layout is
+	 * computed on first use and reused until text, font, font size, width,
+	 * alignment or line spacing changes. If a {@link LayoutCache} is set, an
+	 * equal paragraph's layout is reused from there.
+	 * </p>
+	 *
+	 * @return {@link LayoutResult} of this paragraph
+	 */
+	public LayoutResult getLayout() {
+		if (layout == null) {
+			layout = layoutCache == null ? computeLayout() : layoutCache.get(this);
+		}
+		return layout;
+	}
+
+	/**
+	 * <p>
+	 * Sets the {@link LayoutCache} shared with other paragraphs, or
+	 * {@code null} to lay out this paragraph on its own.
+	 * </p>
+	 *
+	 * @param layoutCache
+	 *            designated {@link LayoutCache}
+	 */
+	public void setLayoutCache(final LayoutCache layoutCache) {
+		this.layoutCache = layoutCache;
+	}
+
+	LayoutResult computeLayout() {
+		final LineCollector lines = layout(false);
+		return new LayoutResult(lines.lines, lines.getLineWidths(), lines.lineTokens, lines.maxLineWidth,
+				getHeight(lines.lineCount));
+	}
+
+	private LineCollector getMeasure() {
+		if (measure == null) {
+			measure = layout(true);
+		}
+		return measure;
+	}
+
+	/**
+	 * <p>
+	 * Breaks the text into lines. In measure-only mode just the number of
+	 * lines and the widest line are determined, without building line strings
+	 * or token lists.
+	 * </p>
+	 */
+	private LineCollector layout(final boolean measureOnly) {
+		final LineCollector lines = new LineCollector(measureOnly);
+		final TokenSpans spans = SPANS.get();
+		Tokenizer.tokenize(text, wrappingFunction, spans);
 
-		int lineCounter = 0;
 		boolean italic = false;
 		boolean bold = false;
 		boolean listElement = false;
@@ -101,21 +166,24 @@ public class Paragraph {
 		int listLevel = 0;
 		Stack<HTMLListNode> stack= new Stack<>();
 		
-		final PipelineLayer textInLine = new PipelineLayer();
-		final PipelineLayer sinceLastWrapPoint = new PipelineLayer();
-
-		for (final Token token : tokens) {
-			switch (token.getType()) {
+		final PipelineLayer textInLine = new PipelineLayer(measureOnly);
+		final PipelineLayer sinceLastWrapPoint = new PipelineLayer(measureOnly);
+
+		for (int index = 0; index < spans.size(); index++) {
+			// tags are identified by name, no token is created for a span
+			final int tagId = spans.getTag(index);
+			final String tag = tagId == Tokenizer.NO_TAG ? null : Tokenizer.getTagName(tagId);
+			switch (spans.getType(index)) {
 			case OPEN_TAG:
-				if (isBold(token)) {
+				if (isBold(tag)) {
 					bold = true;
 					currentFont = getFont(bold, italic);
-				} else if (isItalic(token)) {
+				} else if (isItalic(tag)) {
 					italic = true;
 					currentFont = getFont(bold, italic);
-				} else if (isList(token)) {
+				} else if (isList(tag)) {
 					listLevel++;
-					if (token.getData().equals("ol")) {
+					if ("ol".equals(tag)) {
 						numberOfOrderedLists++;
 						if(listLevel > 1){
 							stack.add(new HTMLListNode(orderListElement-1, stack.isEmpty() ? String.valueOf("1.") : stack.peek().getValue() + String.valueOf(orderListElement-1) + "."));
@@ -126,41 +194,33 @@ public class Paragraph {
 						// check if you have some text before this list, if you don't then you really don't need extra line break for that
 						if (textInLine.trimmedWidth() > 0) {
 							// this is our line
-							result.add(textInLine.trimmedText());
-							lineWidths.put(lineCounter, textInLine.trimmedWidth());
-							mapLineTokens.put(lineCounter, textInLine.tokens());
-							maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+							lines.addLine(textInLine);
 							textInLine.reset();
-							lineCounter++;
 						}
-					} else if (token.getData().equals("ul")) {
+					} else if ("ul".equals(tag)) {
 						textInLine.push(sinceLastWrapPoint);
 						// check if you have some text before this list, if you don't then you really don't need extra line break for that
 						if (textInLine.trimmedWidth() > 0) {
 							// this is our line
-							result.add(textInLine.trimmedText());
-							lineWidths.put(lineCounter, textInLine.trimmedWidth());
-							mapLineTokens.put(lineCounter, textInLine.tokens());
-							maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+							lines.addLine(textInLine);
 							textInLine.reset();
-							lineCounter++;
 						}
 					}
 				}
-				sinceLastWrapPoint.push(token);
+				sinceLastWrapPoint.push(currentFont, fontSize, spans, index);
 				break;
 			case CLOSE_TAG:
-				if (isBold(token)) {
+				if (isBold(tag)) {
 					bold = false;
 					currentFont = getFont(bold, italic);
-					sinceLastWrapPoint.push(token);
-				} else if (isItalic(token)) {
+					sinceLastWrapPoint.push(currentFont, fontSize, spans, index);
+				} else if (isItalic(tag)) {
 					italic = false;
 					currentFont = getFont(bold, italic);
-					sinceLastWrapPoint.push(token);
-				} else if (isList(token)) {
+					sinceLastWrapPoint.push(currentFont, fontSize, spans, index);
+				} else if (isList(tag)) {
 					listLevel--;
-					if (token.getData().equals("ol")) {
+					if ("ol".equals(tag)) {
 						numberOfOrderedLists--;
 						// reset elements
 						orderListElement = stack.peek().getOrderingNumber()+1;
@@ -171,24 +231,17 @@ public class Paragraph {
 					// ensure extra space after each lists
 					// no need to worry about current line text because last closing <li> tag already done that
 					if(listLevel == 0){
-						result.add(" ");
-						lineWidths.put(lineCounter, 0.0f);
-						mapLineTokens.put(lineCounter, new ArrayList<Token>());
-						lineCounter++;
+						lines.addBlankLine();
 					}
-				} else if (isListElement(token)) {
+				} else if (isListElement(tag)) {
 					if(!getAlign().equals(HorizontalAlignment.LEFT)) {
 						listLevel = 0;
 					}
 					// wrap at last wrap point?
 					if (textInLine.width() + sinceLastWrapPoint.trimmedWidth() > width) {
 						// this is our line
-						result.add(textInLine.trimmedText());
-						lineWidths.put(lineCounter, textInLine.trimmedWidth());
-						mapLineTokens.put(lineCounter, textInLine.tokens());
-						maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+						lines.addLine(textInLine);
 						textInLine.reset();
-						lineCounter++;
 						// wrapping at last wrap point
 						if (numberOfOrderedLists>0) {
 							String orderingNumber = stack.isEmpty() ? String.valueOf(orderListElement) + "." : stack.pop().getValue() + ".";
@@ -197,7 +250,7 @@ public class Paragraph {
 							String orderingNumberAndTab = orderingNumber + tab;
 							try {
 								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING, String
-										.valueOf(font.getStringWidth(orderingNumberAndTab) / 1000 * getFontSize())));
+										.valueOf(FontUtils.getStringWidth(font, orderingNumberAndTab, getFontSize()))));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -207,7 +260,7 @@ public class Paragraph {
 								// if it's not left aligned then ignore list and list element and deal with it as normal text where <li> mimic <br> behaviour
 								String tabBullet = getAlign().equals(HorizontalAlignment.LEFT) ? indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0)) + indentLevel(DEFAULT_TAB_AND_BULLET) : indentLevel(DEFAULT_TAB);
 								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-										String.valueOf(font.getStringWidth(tabBullet) / 1000 * getFontSize())));
+										String.valueOf(FontUtils.getStringWidth(font, tabBullet, getFontSize()))));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -217,50 +270,31 @@ public class Paragraph {
 					// wrapping at this must-have wrap point
 					textInLine.push(sinceLastWrapPoint);
 					// this is our line
-					result.add(textInLine.trimmedText());
-					lineWidths.put(lineCounter, textInLine.trimmedWidth());
-					mapLineTokens.put(lineCounter, textInLine.tokens());
-					maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+					lines.addLine(textInLine);
 					textInLine.reset();
-					lineCounter++;
 					listElement = false;
 				}
-				if (isParagraph(token)) {
+				if (isParagraph(tag)) {
 					if (textInLine.width() + sinceLastWrapPoint.trimmedWidth() > width) {
 						// this is our line
-						result.add(textInLine.trimmedText());
-						lineWidths.put(lineCounter, textInLine.trimmedWidth());
-						maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
-						mapLineTokens.put(lineCounter, textInLine.tokens());
-						lineCounter++;
+						lines.addLine(textInLine);
 						textInLine.reset();
 					}
 					// wrapping at this must-have wrap point
 					textInLine.push(sinceLastWrapPoint);
 					// this is our line
-					result.add(textInLine.trimmedText());
-					lineWidths.put(lineCounter, textInLine.trimmedWidth());
-					mapLineTokens.put(lineCounter, textInLine.tokens());
-					maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+					lines.addLine(textInLine);
 					textInLine.reset();
-					lineCounter++;
 					
 					// extra spacing because it's a paragraph
-					result.add(" ");
-					lineWidths.put(lineCounter, 0.0f);
-					mapLineTokens.put(lineCounter, new ArrayList<Token>());
-					lineCounter++;
+					lines.addBlankLine();
 				}
 				break;
 			case POSSIBLE_WRAP_POINT:
 				if (textInLine.width() + sinceLastWrapPoint.trimmedWidth() > width) {
 					// this is our line
 					if (!textInLine.isEmpty()) {
-						result.add(textInLine.trimmedText());
-						lineWidths.put(lineCounter, textInLine.trimmedWidth());
-						maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
-						mapLineTokens.put(lineCounter, textInLine.tokens());
-						lineCounter++;
+						lines.addLine(textInLine);
 						textInLine.reset();
 					}
 					// wrapping at last wrap point
@@ -273,7 +307,7 @@ public class Paragraph {
 							String orderingNumber = stack.isEmpty() ? String.valueOf(orderListElement) + "." : stack.peek().getValue() + "." + String.valueOf(orderListElement-1) + ".";
 							try {
 								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-										String.valueOf(font.getStringWidth(tab+orderingNumber) / 1000 * getFontSize())));
+										String.valueOf(FontUtils.getStringWidth(font, tab+orderingNumber, getFontSize()))));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -282,7 +316,7 @@ public class Paragraph {
 								// if it's not left aligned then ignore list and list element and deal with it as normal text where <li> mimic <br> behavior
 								String tabBullet = getAlign().equals(HorizontalAlignment.LEFT) ? indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0)) + indentLevel(BULLET_SPACE)  : indentLevel(DEFAULT_TAB);
 								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-										String.valueOf(font.getStringWidth(tabBullet) / 1000 * getFontSize())));
+										String.valueOf(FontUtils.getStringWidth(font, tabBullet, getFontSize()))));
 							} catch (IOException e) {
 								// TODO Auto-generated catch block
 								e.printStackTrace();
@@ -298,12 +332,8 @@ public class Paragraph {
 				// wrap at last wrap point?
 				if (textInLine.width() + sinceLastWrapPoint.trimmedWidth() > width) {
 					// this is our line
-					result.add(textInLine.trimmedText());
-					lineWidths.put(lineCounter, textInLine.trimmedWidth());
-					mapLineTokens.put(lineCounter, textInLine.tokens());
-					maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+					lines.addLine(textInLine);
 					textInLine.reset();
-					lineCounter++;
 					// wrapping at last wrap point
 					if (listElement) {
 						if(!getAlign().equals(HorizontalAlignment.LEFT)) {
@@ -316,7 +346,7 @@ public class Paragraph {
 							String orderingNumberAndTab = orderingNumber + tab;
 							try {
 								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING, String
-										.valueOf(font.getStringWidth(orderingNumberAndTab) / 1000 * getFontSize())));
+										.valueOf(FontUtils.getStringWidth(font, orderingNumberAndTab, getFontSize()))));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -325,7 +355,7 @@ public class Paragraph {
 								// if it's not left aligned then ignore list and list element and deal with it as normal text where <li> mimic <br> behaviour
 								String tabBullet = getAlign().equals(HorizontalAlignment.LEFT) ? indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0)) + indentLevel(DEFAULT_TAB_AND_BULLET) : indentLevel(DEFAULT_TAB);
 								textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-										String.valueOf(font.getStringWidth(tabBullet) / 1000 * getFontSize())));
+										String.valueOf(FontUtils.getStringWidth(font, tabBullet, getFontSize()))));
 							} catch (IOException e) {
 								e.printStackTrace();
 							}
@@ -333,16 +363,13 @@ public class Paragraph {
 					}
 					textInLine.push(sinceLastWrapPoint);
 				}
-				if (isParagraph(token)) {
+				if (isParagraph(tag)) {
 					// check if you have some text before this paragraph, if you don't then you really don't need extra line break for that
 					if (textInLine.trimmedWidth() > 0) {
 						// extra spacing because it's a paragraph
-						result.add(" ");
-						lineWidths.put(lineCounter, 0.0f);
-						mapLineTokens.put(lineCounter, new ArrayList<Token>());
-						lineCounter++;
+						lines.addBlankLine();
 					}
-				} else if (isListElement(token)) {
+				} else if (isListElement(tag)) {
 					if(!getAlign().equals(HorizontalAlignment.LEFT)) {
 						listLevel = 0;
 					}
@@ -352,7 +379,7 @@ public class Paragraph {
 						// if it's not left aligned then ignore list and list element and deal with it as normal text where <li> mimic <br> behaviour
 						String tab = getAlign().equals(HorizontalAlignment.LEFT) ? indentLevel(DEFAULT_TAB*Math.max(listLevel - 1, 0)) : indentLevel(DEFAULT_TAB);
 						textInLine.push(currentFont, fontSize, new Token(TokenType.PADDING,
-								String.valueOf(font.getStringWidth(tab) / 1000 * getFontSize())));
+								String.valueOf(FontUtils.getStringWidth(font, tab, getFontSize()))));
 						if (numberOfOrderedLists>0) {
 							// if it's ordering list then move depending on your: ordering number + ". "
 							String orderingNumber;
@@ -375,81 +402,45 @@ public class Paragraph {
 				} else {
 					// wrapping at this must-have wrap point
 					textInLine.push(sinceLastWrapPoint);
-					result.add(textInLine.trimmedText());
-					lineWidths.put(lineCounter, textInLine.trimmedWidth());
-					mapLineTokens.put(lineCounter, textInLine.tokens());
-					maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+					lines.addLine(textInLine);
 					textInLine.reset();
-					lineCounter++;
 				}
 				break;
 			case TEXT:
 				try {
-					String word = token.getData();
-					if(font.getStringWidth(word) / 1000f * fontSize > width && width > font.getAverageFontWidth() / 1000f * fontSize) {
+					final int start = spans.getStart(index);
+					final int end = spans.getEnd(index);
+					final GlyphMetrics metrics = GlyphMetrics.of(font);
+					final float wordWidth = metrics.getStringWidth(text, start, end) / 1000f * fontSize;
+					if(wordWidth > width && width > metrics.getAverageWidth() / 1000f * fontSize) {
+						final float[] advances = prefixAdvances(start, end);
 						// you need to check if you have already something in your line 
 						boolean alreadyTextInLine = false;
 						if(textInLine.trimmedWidth()>0){
 							alreadyTextInLine = true;
 						}
-						while (font.getStringWidth(word) / 1000f * fontSize > width) {
-						float width = 0;
-						float firstPartWordWidth = 0;
-						float restOfTheWordWidth = 0;
-						String lastTextToken = word;
-						StringBuilder firstPartOfWord = new StringBuilder();
-						StringBuilder restOfTheWord = new StringBuilder();
-						for (int i = 0; i < lastTextToken.length(); i++) {
-							char c = lastTextToken.charAt(i);
-							try {
-								width += (font.getStringWidth("" + c) / 1000f * fontSize);
-							} catch (IOException e) {
-								e.printStackTrace();
-							}
-							if(alreadyTextInLine){
-								if (width < this.width - textInLine.trimmedWidth()) {
-									firstPartOfWord.append("" + c);
-									firstPartWordWidth = Math.max(width, firstPartWordWidth);
-								} else {
-									restOfTheWord.append("" + c);
-									restOfTheWordWidth = Math.max(width, restOfTheWordWidth);
-								}
-							} else {
-								if (width < this.width) {
-									firstPartOfWord.append("" + c);
-									firstPartWordWidth = Math.max(width, firstPartWordWidth);
-								} else {
-									if(i==0){
-										firstPartOfWord.append("" + c);
-										for (int j = 1; j< lastTextToken.length(); j++){
-											restOfTheWord.append("" + lastTextToken.charAt(j));
-										}
-										break;
-									} else {
-										restOfTheWord.append("" + c);
-										restOfTheWordWidth = Math.max(width, restOfTheWordWidth);
-										
-									}
-								}
-							}
+						int wordStart = start;
+						while (advances[end - start] - advances[wordStart - start] > width) {
+						final float availableWidth = alreadyTextInLine ? width - textInLine.trimmedWidth() : width;
+						int breakIndex = start + breakIndex(advances, wordStart - start, end - start, availableWidth);
+						if (breakIndex == wordStart && !alreadyTextInLine) {
+							// not even the first character fits, it gets a line of its own
+							breakIndex++;
 						}
 						// reset
 						alreadyTextInLine = false;
 						sinceLastWrapPoint.push(currentFont, fontSize,
-								new Token(TokenType.TEXT, firstPartOfWord.toString()));
+								new Token(TokenType.TEXT, text.substring(wordStart, breakIndex)));
 						textInLine.push(sinceLastWrapPoint);
 						// this is our line
-						result.add(textInLine.trimmedText());
-						lineWidths.put(lineCounter, textInLine.trimmedWidth());
-						mapLineTokens.put(lineCounter, textInLine.tokens());
-						maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+						lines.addLine(textInLine);
 						textInLine.reset();
-						lineCounter++;
-						word = restOfTheWord.toString();
+						wordStart = breakIndex;
 						}
-						sinceLastWrapPoint.push(currentFont, fontSize, new Token(TokenType.TEXT, word));
+						sinceLastWrapPoint.push(currentFont, fontSize,
+								new Token(TokenType.TEXT, text.substring(wordStart, end)));
 					} else {
-						sinceLastWrapPoint.push(currentFont, fontSize, token);
+						sinceLastWrapPoint.push(currentFont, fontSize, spans, index);
 					}
 				
 				} catch (IOException e) {
@@ -462,34 +453,71 @@ public class Paragraph {
 
 		{
 			textInLine.push(sinceLastWrapPoint);
-			result.add(textInLine.trimmedText());
-			lineWidths.put(lineCounter, textInLine.trimmedWidth());
-			mapLineTokens.put(lineCounter, textInLine.tokens());
-			maxLineWidth = Math.max(maxLineWidth, textInLine.trimmedWidth());
+			lines.addLine(textInLine);
 		}
+		return lines;
+	}
+
+	private float getHeight(final int lineCount) {
+		return lineCount == 0 ? 0 : (lineCount - 1) * getLineSpacing() * getFontHeight() + getFontHeight();
+	}
 
-		return result;
+	/**
+	 * <p>
+	 * Computes the prefix sums of the glyph advances of designated part of the
+	 * text, element {@code i} being the width of its first {@code i}
+	 * characters.
+	 * </p>
+	 */
+	private float[] prefixAdvances(final int start, final int end) {
+		final GlyphMetrics metrics = GlyphMetrics.of(font);
+		final float[] advances = new float[end - start + 1];
+		for (int i = start; i < end; i++) {
+			advances[i - start + 1] = advances[i - start] + metrics.getWidth(text.charAt(i)) / 1000f * fontSize;
+		}
+		return advances;
+	}
 
+	/**
+	 * <p>
+	 * Finds how far a word starting at {@code from} fits into designated width.
+	 * </p>
+	 *
+	 * @return the first index in {@code [from, to]} whose character doesn't fit
+	 *         anymore, {@code to} if the whole word fits
+	 */
+	private static int breakIndex(final float[] advances, final int from, final int to, final float availableWidth) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (advances[middle + 1] - advances[from] < availableWidth) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
 	}
 
-	private boolean isItalic(final Token token) {
-		return "i".equals(token.getData());
+	private boolean isItalic(final String tag) {
+		return "i".equals(tag);
 	}
 
-	private boolean isBold(final Token token) {
-		return "b".equals(token.getData());
+	private boolean isBold(final String tag) {
+		return "b".equals(tag);
 	}
 
-	private boolean isParagraph(final Token token) {
-		return "p".equals(token.getData());
+	private boolean isParagraph(final String tag) {
+		return "p".equals(tag);
 	}
 
-	private boolean isListElement(final Token token) {
-		return "li".equals(token.getData());
+	private boolean isListElement(final String tag) {
+		return "li".equals(tag);
 	}
 
-	private boolean isList(final Token token) {
-		return "ul".equals(token.getData()) || "ol".equals(token.getData());
+	private boolean isList(final String tag) {
+		return "ul".equals(tag) || "ol".equals(tag);
 	}
 
 	private static String indentLevel(int numberOfSpaces) {
@@ -520,6 +548,10 @@ public class Paragraph {
 	}
 
 	public float write(final PDPageContentStream stream, float cursorX, float cursorY) {
+		return write(new PageContentStreamOptimized(stream), cursorX, cursorY);
+	}
+
+	public float write(final PageContentStreamOptimized stream, float cursorX, float cursorY) {
 		if (drawDebug) {
 			PDStreamUtils.rectFontMetrics(stream, cursorX, cursorY, font, fontSize);
 
@@ -554,7 +586,7 @@ public class Paragraph {
 					float y = (float) (cursorY - FontUtils.getHeight(font, fontSize)
 							- FontUtils.getDescent(font, fontSize) - 1.5);
 					try {
-						float titleWidth = font.getStringWidth(line) / 1000 * fontSize;
+						float titleWidth = FontUtils.getStringWidth(font, line, fontSize);
 						stream.moveTo(textX, y);
 						stream.lineTo(textX + titleWidth, y);
 						stream.stroke();
@@ -574,12 +606,19 @@ public class Paragraph {
 		return cursorY;
 	}
 
+	/**
+	 * <p>
+	 * Retrieves the height of this paragraph. Unless the full layout is
+	 * already available, only the number of lines is measured.
+	 * </p>
+	 *
+	 * @return height of this paragraph
+	 */
 	public float getHeight() {
-		if(getLines().size() == 0){
-			return 0;
-		} else {
-			return (getLines().size()-1)*getLineSpacing()*getFontHeight() + getFontHeight();
+		if (layout != null || layoutCache != null) {
+			return getLayout().getHeight();
 		}
+		return getHeight(getMeasure().lineCount);
 	}
 
 	public float getFontHeight() {
@@ -603,6 +642,7 @@ public class Paragraph {
 	@Deprecated
 	public Paragraph withWidth(int width) {
 		this.width = width;
+		invalidateLayout();
 		return this;
 	}
 
@@ -616,6 +656,7 @@ public class Paragraph {
 	public Paragraph withFont(PDFont font, int fontSize) {
 		this.font = font;
 		this.fontSize = fontSize;
+		invalidateLayout();
 		return this;
 	}
 
@@ -642,12 +683,8 @@ public class Paragraph {
 	}
 
 	private float getHorizontalFreeSpace(final String text) {
-		try {
-			final float tw = font.getStringWidth(text.trim()) / 1000 * fontSize;
-			return width - tw;
-		} catch (IOException e) {
-			throw new IllegalStateException("Unable to calculate text width", e);
-		}
+		final float tw = FontUtils.getStringWidth(font, text.trim(), fontSize);
+		return width - tw;
 	}
 
 	public float getWidth() {
@@ -672,6 +709,8 @@ public class Paragraph {
 
 	public void setAlign(HorizontalAlignment align) {
 		this.align = align;
+		// list indentation depends on alignment
+		invalidateLayout();
 	}
 
 	public boolean isDrawDebug() {
@@ -687,15 +726,18 @@ public class Paragraph {
 	}
 
 	public float getMaxLineWidth() {
-		return maxLineWidth;
+		if (layout != null || layoutCache != null) {
+			return getLayout().getMaxLineWidth();
+		}
+		return getMeasure().maxLineWidth;
 	}
 
 	public float getLineWidth(int key) {
-		return lineWidths.get(key);
+		return getLayout().getLineWidth(key);
 	}
 
 	public Map<Integer, List<Token>> getMapLineTokens() {
-		return mapLineTokens;
+		return getLayout().getLineTokens();
 	}
 
 	public float getLineSpacing() {
@@ -704,6 +746,59 @@ public class Paragraph {
 
 	public void setLineSpacing(float lineSpacing) {
 		this.lineSpacing = lineSpacing;
+		invalidateLayout();
 	}
 
+	private void invalidateLayout() {
+		layout = null;
+		measure = null;
+	}
+
+	/**
+	 * <p>
+	 * Collects the lines of a layout. In measure-only mode just the line
+	 * count and the widest line are kept.
+	 * </p>
+	 */
+	private static final class LineCollector {
+
+		private final boolean measureOnly;
+		private final List<String> lines = new ArrayList<>();
+		private final List<Float> lineWidths = new ArrayList<>();
+		private final Map<Integer, List<Token>> lineTokens = new LinkedHashMap<>();
+		private int lineCount;
+		private float maxLineWidth = Integer.MIN_VALUE;
+
+		LineCollector(final boolean measureOnly) {
+			this.measureOnly = measureOnly;
+		}
+
+		void addLine(final PipelineLayer line) {
+			final float width = line.trimmedWidth();
+			if (!measureOnly) {
+				lines.add(line.trimmedText());
+				lineWidths.add(width);
+				lineTokens.put(lineCount, line.tokens());
+			}
+			maxLineWidth = Math.max(maxLineWidth, width);
+			lineCount++;
+		}
+
+		void addBlankLine() {
+			if (!measureOnly) {
+				lines.add(" ");
+				lineWidths.add(0.0f);
+				lineTokens.put(lineCount, new ArrayList<Token>());
+			}
+			lineCount++;
+		}
+
+		float[] getLineWidths() {
+			final float[] widths = new float[lineWidths.size()];
+			for (int i = 0; i < widths.length; i++) {
+				widths[i] = lineWidths.get(i);
+			}
+			return widths;
+		}
+	}
 }
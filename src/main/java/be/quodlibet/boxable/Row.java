@@ -22,6 +22,12 @@ public class Row<T extends PDPage> {
     List<Cell<T>> cells;
     private boolean headerRow = false;
     float height;
+    // highest cell, measured again only after a cell changed
+    private float cellsHeight;
+    private boolean cellsHeightValid;
+    private int measuredCells;
+    // counts changes of the row and its cells, so a drawn copy of the row can tell it is outdated
+    private int modCount;
     private float lineSpacing = 1;
 
     Row(Table<T> table, List<Cell<T>> cells, float height) {
@@ -159,27 +165,63 @@ public class Row<T extends PDPage> {
      * @return Row's height
      */
     public float getHeight() {
-        float maxheight = 0.0f;
-        for (Cell<T> cell : this.cells) {
-            float cellHeight = cell.getCellHeight();
-
-            if (cellHeight > maxheight) {
-                maxheight = cellHeight;
+        // cells report their changes, the size check covers cells added through getCells()
+        if (!cellsHeightValid || measuredCells != cells.size()) {
+            float maxheight = 0.0f;
+            for (Cell<T> cell : this.cells) {
+                float cellHeight = cell.getCellHeight();
+
+                if (cellHeight > maxheight) {
+                    maxheight = cellHeight;
+                }
             }
+            cellsHeight = maxheight;
+            measuredCells = cells.size();
+            cellsHeightValid = true;
         }
 
-        if (maxheight > height) {
-            this.height = maxheight;
+        if (cellsHeight > height) {
+            this.height = cellsHeight;
         }
         return height;
     }
 
+    /**
+     * <p>
+     * Marks the cached row height as outdated, called by cells whenever a
+     * property which affects their height changes.
+     * </p>
+     */
+    void invalidateHeight() {
+        cellsHeightValid = false;
+        modCount++;
+    }
+
+    /**
+     * <p>
+     * Records a change of the row which doesn't affect its height, called by
+     * cells whenever a property which affects their drawing changes.
+     * </p>
+     */
+    void markChanged() {
+        modCount++;
+    }
+
+    /**
+     * @return number of changes of this row and its cells, see
+     *         {@link #markChanged()}
+     */
+    int getModCount() {
+        return modCount;
+    }
+
     public float getLineHeight() throws IOException {
         return height;
     }
 
     public void setHeight(float height) {
         this.height = height;
+        modCount++;
     }
 
     public List<Cell<T>> getCells() {
@@ -192,12 +234,17 @@ public class Row<T extends PDPage> {
 
     public void setCells(List<Cell<T>> cells) {
         this.cells = cells;
+        invalidateHeight();
     }
 
     public float getWidth() {
         return table.getWidth();
     }
 
+    LayoutCache getLayoutCache() {
+        return table.getLayoutCache();
+    }
+
     public PDOutlineItem getBookmark() {
         return bookmark;
     }
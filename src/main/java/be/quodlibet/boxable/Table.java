@@ -4,32 +4,62 @@
  */
 package be.quodlibet.boxable;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.awt.Color;
 import java.awt.geom.AffineTransform;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.zip.DeflaterOutputStream;
 
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageXYZDestination;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 import org.apache.pdfbox.util.Matrix;
 
+import com.google.common.base.Throwables;
+
+import be.quodlibet.boxable.image.Image;
+import be.quodlibet.boxable.line.BorderPlanner;
 import be.quodlibet.boxable.line.LineStyle;
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
 import be.quodlibet.boxable.page.PageProvider;
 import be.quodlibet.boxable.text.Token;
 import be.quodlibet.boxable.text.WrappingFunction;
+import be.quodlibet.boxable.utils.FontEmbedding;
 import be.quodlibet.boxable.utils.FontUtils;
 import be.quodlibet.boxable.utils.PDStreamUtils;
-import java.io.UncheckedIOException;
+import be.quodlibet.boxable.utils.TextRunWriter;
 
 public abstract class Table<T extends PDPage> {
     
@@ -37,10 +67,19 @@ public abstract class Table<T extends PDPage> {
     private float margin;
     
     private T currentPage;
-    private PDPageContentStream tableContentStream;
+    private PageContentStreamOptimized tableContentStream;
+    private final BorderPlanner borderPlanner = new BorderPlanner();
+    private final FillPlanner fillPlanner = new FillPlanner();
+    // header rows painted once and placed on every new page, see drawHeaderRows()
+    private PDFormXObject headerForm;
+    private float headerFormYStart;
+    private final List<Row<T>> headerFormRows = new ArrayList<>();
+    private int[] headerFormModCounts;
     private List<PDOutlineItem> bookmarks;
     private List<Row<T>> header = new ArrayList<>();
     private List<Row<T>> rows = new ArrayList<>();
+    // first drawn row, it keeps its top border; rows are dropped once flushed
+    private Row<T> firstRow;
     private List<T> pages = new ArrayList<>();
     
     private final float yStartNewPage;
@@ -63,6 +102,17 @@ public abstract class Table<T extends PDPage> {
     
     private boolean drawDebug;
 
+    private LayoutCache layoutCache;
+
+    // 0 keeps the rows until flush() or draw()
+    private int flushThreshold;
+
+    // pages whose content is generated concurrently, only set while draw(Executor) lays out the pages
+    private List<PageContent> pageContents;
+
+    // number of rows laid out by one task of prepareLayout
+    private static final int LAYOUT_BATCH_SIZE = 32;
+
     /**
      * @deprecated Use one of the constructors that pass a {@link PageProvider}
      * @param yStart Y position where {@link Table} will start
@@ -147,6 +197,10 @@ public abstract class Table<T extends PDPage> {
     protected PDType0Font loadFont(String fontPath) throws IOException {
         return FontUtils.loadFont(getDocument(), fontPath);
     }
+
+    protected PDType0Font loadFont(String fontPath, FontEmbedding embedding) throws IOException {
+        return FontUtils.loadFont(getDocument(), fontPath, embedding);
+    }
     
     protected PDDocument getDocument() {
         return document;
@@ -164,7 +218,7 @@ public abstract class Table<T extends PDPage> {
         ensureStreamIsOpen();
         
         if (isEndOfPage(freeSpaceForPageBreak)) {
-            this.tableContentStream.close();
+            closeContentStream();
             pageBreak();
             tableStartedAtNewPage = true;
         }
@@ -173,10 +227,11 @@ public abstract class Table<T extends PDPage> {
             // if you don't have title just use the height of maxTextBox in your "row"
             yStart -= height;
         } else {
-            try (PDPageContentStream articleTitle = createPdPageContentStream()) {
+            try (PageContentStreamOptimized articleTitle = createPdPageContentStream()) {
                 Paragraph paragraph = new Paragraph(title, font, fontSize, tableWidth, HorizontalAlignment.get(alignment),
                         wrappingFunction);
                 paragraph.setDrawDebug(drawDebug);
+                paragraph.setLayoutCache(layoutCache);
                 yStart = paragraph.write(articleTitle, margin, yStart);
                 if (paragraph.getHeight() < height) {
                     yStart -= (height - paragraph.getHeight());
@@ -199,6 +254,7 @@ public abstract class Table<T extends PDPage> {
     }
     
     public Row<T> createRow(float height) {
+        flushIfFull();
         Row<T> row = new Row<>(this, height);
         row.setLineSpacing(lineSpacing);
         this.rows.add(row);
@@ -206,35 +262,313 @@ public abstract class Table<T extends PDPage> {
     }
     
     public Row<T> createRow(List<Cell<T>> cells, float height) {
+        flushIfFull();
         Row<T> row = new Row<>(this, cells, height);
         row.setLineSpacing(lineSpacing);
         this.rows.add(row);
         return row;
     }
     
+    /**
+     * <p>
+     * Lays out the cells of all rows in parallel on the common
+     * {@link ForkJoinPool}.
+     * </p>
+     *
+     * @see #prepareLayout(Executor)
+     */
+    public void prepareLayout() {
+        prepareLayout(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * <p>
+     * Lays out the paragraphs of all cells and calculates the row heights in
+     * parallel, so that {@link #draw()} only has to paginate and draw. Rows
+     * are independent until pagination, they are laid out in batches on
+     * designated {@link Executor}. This method returns once all rows are laid
+     * out.
+     * </p>
+     * <p>
+     * Rows and cells must not be modified while this method runs.
+     * </p>
+     *
+     * @param executor {@link Executor} running the layout tasks
+     * @throws IllegalStateException if the current thread is interrupted while
+     * waiting for the layout tasks
+     */
+    public void prepareLayout(Executor executor) {
+        checkNotNull(executor, "Executor");
+        final Set<Row<T>> uniqueRows = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>());
+        uniqueRows.addAll(header);
+        uniqueRows.addAll(rows);
+        final List<Row<T>> allRows = new ArrayList<>(uniqueRows);
+        final List<FutureTask<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < allRows.size(); start += LAYOUT_BATCH_SIZE) {
+            final List<Row<T>> batch = allRows.subList(start, Math.min(start + LAYOUT_BATCH_SIZE, allRows.size()));
+            final FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (Row<T> row : batch) {
+                        layOut(row);
+                        row.getHeight();
+                    }
+                    return null;
+                }
+            });
+            tasks.add(task);
+            executor.execute(task);
+        }
+        try {
+            for (FutureTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while laying out table rows", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
     public float draw() throws IOException {
         ensureStreamIsOpen();
         
-        for (Row<T> row : rows) {
-            if (header.contains(row)) {
-                // check if header row height and first data row height can fit the page
-                // if not draw them on another side
-                if (isEndOfPage(getMinimumHeight())) {
+        drawPendingRows(rows.size());
+        
+        endTable();
+        return yStart;
+    }
+
+    /**
+     * <p>
+     * Draws all rows like {@link #draw()}, but generates the content streams
+     * of the pages concurrently on designated {@link Executor}. The rows are
+     * paginated, the pages are created and the header form and images are
+     * embedded on the calling thread first. The tasks then paint the rows of
+     * one page each into a separate buffer, which is attached to its page on
+     * the calling thread in page order.
+     * </p>
+     * <p>
+     * Rows, cells and the {@link PDDocument} must not be modified while this
+     * method runs.
+     * </p>
+     *
+     * @param executor {@link Executor} generating the page content streams
+     * @return Y position below the table
+     * @throws IOException if the content of a page can't be generated
+     * @throws IllegalStateException if the current thread is interrupted while
+     * waiting for the page content
+     */
+    public float draw(Executor executor) throws IOException {
+        checkNotNull(executor, "Executor");
+        if (tableContentStream != null) {
+            // content drawn so far precedes the generated content on the current page
+            closeContentStream();
+            tableContentStream = null;
+        }
+
+        final List<PageContent> contents = new ArrayList<>();
+        contents.add(new PageContent(getCurrentPage()));
+        pageContents = contents;
+        try {
+            drawPendingRows(rows.size());
+        } finally {
+            pageContents = null;
+        }
+
+        final List<FutureTask<byte[]>> tasks = new ArrayList<>();
+        for (PageContent content : contents) {
+            final FutureTask<byte[]> task = new FutureTask<>(content);
+            tasks.add(task);
+            executor.execute(task);
+        }
+        try {
+            for (int i = 0; i < contents.size(); i++) {
+                contents.get(i).attach(tasks.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating page content", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+        return yStart;
+    }
+
+    /**
+     * <p>
+     * Plans on which pages the rows which are not drawn yet will be drawn,
+     * starting at the current position of the table. The plan accounts for
+     * the header rows repeated on every new page and the page margins, it is
+     * the pagination {@link #draw()} uses as long as the rows don't change.
+     * </p>
+     * <p>
+     * Planning lays out all cells to measure the row heights, nothing is
+     * drawn. No page, content stream or other PDF object is created and the
+     * table isn't changed, so this is a dry run of {@link #draw()}: the plan
+     * tells the final Y position, the page count, the page of every row and
+     * the height used on every page. Layouts can be compared by planning,
+     * changing rows or cells and planning again.
+     * </p>
+     *
+     * @return pagination of the pending rows
+     * @throws IllegalStateException if a new page can't hold the header rows
+     */
+    public PagePlan planPages() {
+        return planPages(rows.size());
+    }
+
+    private PagePlan planPages(int count) {
+        final PagePlan.Builder plan = new PagePlan.Builder(count, yStart);
+        final float pageYStart = yStartNewPage - pageTopMargin;
+        float y = yStart;
+        for (int i = 0; i < count; i++) {
+            Row<T> row = rows.get(i);
+            // the decisions and the arithmetic match drawing the rows one by one, so the planned pages are exact
+            if (header.contains(row) && y - getMinimumHeight() <= pageBottomMargin) {
+                // header row height and first data row height don't fit the page
+                plan.pageBreak(false, y, pageYStart);
+                y = pageYStart;
+            }
+            float height = row.getHeight();
+            if (y - height <= pageBottomMargin) {
+                plan.pageBreak(!header.isEmpty(), y, pageYStart);
+                y = pageYStart;
+                for (Row<T> headerRow : header) {
+                    if (y - headerRow.getHeight() <= pageBottomMargin) {
+                        throw new IllegalStateException("Header rows don't fit on a new page");
+                    }
+                    if (drawContent) {
+                        y -= headerRow.getHeight();
+                    }
+                }
+            }
+            plan.addRow(height, y);
+            if (drawContent) {
+                y -= height;
+            }
+        }
+        return plan.build(y);
+    }
+
+    /**
+     * <p>
+     * Draws all rows created since the last flush and drops them from the
+     * table, so a table can be streamed page by page instead of holding all
+     * its rows until {@link #draw()}. Header rows are kept and redrawn on
+     * every new page. Header rows at the end of the pending rows are drawn
+     * together with the first data row which follows them.
+     * </p>
+     * <p>
+     * Call {@link #draw()} once after the last row to draw the remaining rows
+     * and finish the table. Flushed rows are no longer part of
+     * {@link #getRows()}. Rows are flushed automatically as they are created
+     * if a {@linkplain #setFlushThreshold(int) flush threshold} is set.
+     * </p>
+     *
+     * @throws IOException if the rows can't be written to the page
+     */
+    public void flush() throws IOException {
+        ensureStreamIsOpen();
+        int count = rows.size();
+        while (count > 0 && header.contains(rows.get(count - 1))) {
+            count--;
+        }
+        drawPendingRows(count);
+        rows.subList(0, count).clear();
+    }
+
+    private void flushIfFull() {
+        if (flushThreshold > 0 && rows.size() >= flushThreshold) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to flush table rows", e);
+            }
+        }
+    }
+
+    /**
+     * @return number of pending rows which are flushed when another row is
+     * created, {@code 0} if rows are only drawn by {@link #flush()} and
+     * {@link #draw()}
+     */
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    /**
+     * <p>
+     * Streams the rows of this table as they are created: once designated
+     * number of rows is pending, {@link #createRow(float)} {@linkplain #flush()
+     * flushes} them before it creates the next row, so at most that many rows
+     * are kept. A row must therefore be complete, cells and header state
+     * included, before the next row is created. Call {@link #draw()} after the
+     * last row.
+     * </p>
+     *
+     * @param flushThreshold number of pending rows, {@code 0} to draw rows only
+     * on {@link #flush()} and {@link #draw()}
+     */
+    public void setFlushThreshold(int flushThreshold) {
+        checkArgument(flushThreshold >= 0, "Flush threshold must not be negative");
+        this.flushThreshold = flushThreshold;
+    }
+
+    private void drawPendingRows(int count) throws IOException {
+        // the rows will be drawn, so their heights are taken from the full layout instead of measuring them first
+        for (Row<T> headerRow : header) {
+            layOut(headerRow);
+        }
+        for (int i = 0; i < count; i++) {
+            layOut(rows.get(i));
+        }
+        // pages are planned first, so all rows are laid out before anything is written
+        final PagePlan plan = planPages(count);
+        int page = 1;
+        for (int i = 0; i < count; i++) {
+            Row<T> row = rows.get(i);
+            if (firstRow == null) {
+                firstRow = row;
+            }
+            boolean startsNewPage = false;
+            for (; page < plan.getPageCount() && plan.getFirstRow(page) == i; page++) {
+                setTableIsBroken(true);
+                if (plan.isHeaderRepeated(page) || !header.contains(row)) {
+                    // the row itself doesn't fit, drawRow() breaks the page
+                    startsNewPage = true;
+                } else {
+                    // header row height and first data row height don't fit, draw them on another page
                     pageBreak();
                     tableStartedAtNewPage = true;
                 }
             }
-            drawRow(row);
+            drawRow(row, startsNewPage, true);
         }
-        
-        endTable();
-        return yStart;
     }
-    
-    private void drawRow(Row<T> row) throws IOException {
+
+    private void layOut(Row<T> row) {
+        for (Cell<T> cell : row.getCells()) {
+            if (!(cell instanceof ImageCell)) {
+                cell.getParagraph().getLayout();
+            }
+        }
+    }
+
+    /**
+     * @param startsNewPage {@code true} if the row doesn't fit and starts a
+     * new page
+     * @param paint {@code false} to only advance the table past the row, when
+     * it is already painted by the header form
+     */
+    private void drawRow(Row<T> row, boolean startsNewPage, boolean paint) throws IOException {
         // if it is not header row or first row in the table then remove row's top border
-        if (row != header && row != rows.get(0)) {
-            if (!isEndOfPage(row)) {
+        if (row != header && row != firstRow) {
+            if (!startsNewPage) {
                 row.removeTopBorders();
             }
         }
@@ -251,7 +585,7 @@ public abstract class Table<T extends PDPage> {
         // we want to remove the borders as often as possible
         removeTopBorders = true;
         
-        if (isEndOfPage(row)) {
+        if (startsNewPage) {
 
             // Draw line at bottom of table
             endTable();
@@ -261,9 +595,7 @@ public abstract class Table<T extends PDPage> {
 
             // redraw all headers on each currentPage
             if (!header.isEmpty()) {
-                for (Row<T> headerRow : header) {
-                    drawRow(headerRow);
-                }
+                drawHeaderRows();
                 // after you draw all header rows on next page please keep removing top borders to avoid double border drawing
                 removeTopBorders = true;
             } else {
@@ -272,7 +604,7 @@ public abstract class Table<T extends PDPage> {
             }
         }
         // if it is first row in the table, we have to draw the top border
-        if (row == rows.get(0)) {
+        if (row == firstRow) {
             removeTopBorders = false;
         }
         
@@ -281,7 +613,7 @@ public abstract class Table<T extends PDPage> {
         }
 
         // if it is header row or first row in the table, we have to draw the top border
-        if (row == rows.get(0)) {
+        if (row == firstRow) {
             removeTopBorders = false;
         }
         
@@ -289,17 +621,93 @@ public abstract class Table<T extends PDPage> {
             row.removeTopBorders();
         }
         
-        if (drawLines) {
-            drawVerticalLines(row);
+        if (paint && pageContents != null) {
+            // painted later, concurrently with the other pages
+            currentPageContent().addRow(row, yStart);
+        } else if (paint) {
+            if (drawLines) {
+                drawVerticalLines(row, yStart, tableContentStream, borderPlanner, fillPlanner);
+            }
+            if (drawContent) {
+                drawCellContent(row, yStart, tableContentStream, null);
+            }
         }
         
         if (drawContent) {
-            drawCellContent(row);
+            // Set Y position for next row
+            yStart = yStart - row.getHeight();
+            row.setYStart(yStart);
         }
         
         row.setPage(this.currentPage);
     }
 
+    /**
+     * <p>
+     * Draws the header rows at the top of a new page. The header is painted
+     * once into a form XObject which is then placed on every page, it is only
+     * painted again if a header row changed or the header starts at another
+     * position.
+     * </p>
+     */
+    private void drawHeaderRows() throws IOException {
+        if (isHeaderFormOutdated()) {
+            PageContentStreamOptimized pageStream = tableContentStream;
+            // the form is painted right away, also when the pages are generated later
+            List<PageContent> deferredPages = pageContents;
+            pageContents = null;
+            try {
+                PDAppearanceStream form = new PDAppearanceStream(getDocument());
+                form.setBBox(getCurrentPage().getMediaBox());
+                form.setResources(new PDResources());
+                headerFormYStart = yStart;
+                tableContentStream = new PageContentStreamOptimized(new PDPageContentStream(getDocument(), form));
+                for (Row<T> headerRow : header) {
+                    drawRow(headerRow, false, true);
+                }
+                closeContentStream();
+                headerForm = form;
+            } finally {
+                tableContentStream = pageStream;
+                pageContents = deferredPages;
+            }
+        } else {
+            for (Row<T> headerRow : header) {
+                drawRow(headerRow, false, false);
+            }
+        }
+        // drawing the rows may change them (e.g. remove top borders), remember their state afterwards
+        headerFormRows.clear();
+        headerFormRows.addAll(header);
+        headerFormModCounts = new int[header.size()];
+        for (int i = 0; i < header.size(); i++) {
+            headerFormModCounts[i] = header.get(i).getModCount();
+        }
+        if (pageContents != null) {
+            currentPageContent().setHeaderForm(headerForm);
+        } else {
+            tableContentStream.drawForm(headerForm);
+        }
+    }
+
+    private boolean isHeaderFormOutdated() {
+        if (headerForm == null || headerFormYStart != yStart || !headerFormRows.equals(header)
+                || !isSameBox(headerForm.getBBox(), getCurrentPage().getMediaBox())) {
+            return true;
+        }
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).getModCount() != headerFormModCounts[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameBox(PDRectangle a, PDRectangle b) {
+        return a.getLowerLeftX() == b.getLowerLeftX() && a.getLowerLeftY() == b.getLowerLeftY()
+                && a.getUpperRightX() == b.getUpperRightX() && a.getUpperRightY() == b.getUpperRightY();
+    }
+
     /**
      * <p>
      * Method to switch between the {@link PageProvider} and the abstract method
@@ -332,15 +740,18 @@ public abstract class Table<T extends PDPage> {
                 "You either have to provide a " + PageProvider.class.getCanonicalName() + " or override this method");
     }
     
-    private PDPageContentStream createPdPageContentStream() throws IOException {
-        return new PDPageContentStream(getDocument(), getCurrentPage(), true, true);
+    private PageContentStreamOptimized createPdPageContentStream() throws IOException {
+        return new PageContentStreamOptimized(new PDPageContentStream(getDocument(), getCurrentPage(), true, true));
     }
     
-    private void drawCellContent(Row<T> row) throws IOException {
+    private void drawCellContent(Row<T> row, float yStart, PageContentStreamOptimized stream,
+            Map<Image, PDImageXObject> images) throws IOException {
 
         // position into first cell (horizontal)
         float cursorX = margin;
         float cursorY;
+        // text of a cell is written in one text object, merging adjacent pieces with the same font
+        final TextRunWriter textWriter = new TextRunWriter(stream);
         
         for (Cell<T> cell : row.getCells()) {
             // remember horizontal cursor position, so we can advance to the next cell easily later
@@ -376,7 +787,12 @@ public abstract class Table<T extends PDPage> {
                         cursorX += cell.getHorizontalFreeSpace();
                         break;
                 }
-                imageCell.getImage().draw(document, tableContentStream, cursorX, cursorY);
+                if (images == null) {
+                    imageCell.getImage().draw(document, stream, cursorX, cursorY);
+                } else {
+                    // embedded on the coordinating thread, see PageContent
+                    imageCell.getImage().draw(images.get(imageCell.getImage()), stream, cursorX, cursorY);
+                }
                 
             } else {
                 // no text without font
@@ -384,19 +800,16 @@ public abstract class Table<T extends PDPage> {
                     throw new IllegalArgumentException("Font is null on Cell=" + cell.getText());
                 }
 
-                // font settings
-                this.tableContentStream.setFont(cell.getFont(), cell.getFontSize());
-                
                 if (cell.isTextRotated()) {
                     // debugging mode - drawing (default!) padding of rotated cells
                     //left
-                    //					PDStreamUtils.rect(tableContentStream, cursorX, yStart, 5, cell.getHeight(), Color.GREEN);
+                    //					PDStreamUtils.rect(stream, cursorX, yStart, 5, cell.getHeight(), Color.GREEN);
                     //top
-                    //					PDStreamUtils.rect(tableContentStream, cursorX, yStart, cell.getWidth(), 5 , Color.GREEN);
+                    //					PDStreamUtils.rect(stream, cursorX, yStart, cell.getWidth(), 5 , Color.GREEN);
                     // bottom
-                    //					PDStreamUtils.rect(tableContentStream, cursorX, yStart - cell.getHeight(), cell.getWidth(), -5 , Color.GREEN);
+                    //					PDStreamUtils.rect(stream, cursorX, yStart - cell.getHeight(), cell.getWidth(), -5 , Color.GREEN);
                     //right 
-                    //					PDStreamUtils.rect(tableContentStream, cursorX + cell.getWidth() - 5, yStart, 5, cell.getHeight(), Color.GREEN);
+                    //					PDStreamUtils.rect(stream, cursorX + cell.getWidth() - 5, yStart, 5, cell.getHeight(), Color.GREEN);
 
                     cursorY = yStart - cell.getInnerHeight() - cell.getTopPadding()
                             - (cell.getTopBorder() != null ? cell.getTopBorder().getWidth() : 0);
@@ -431,13 +844,13 @@ public abstract class Table<T extends PDPage> {
                 } else {
                     // debugging mode - drawing (default!) padding of rotated cells
                     //left
-                    //					PDStreamUtils.rect(tableContentStream, cursorX, yStart, 5, cell.getHeight(), Color.RED);
+                    //					PDStreamUtils.rect(stream, cursorX, yStart, 5, cell.getHeight(), Color.RED);
                     //top
-                    //					PDStreamUtils.rect(tableContentStream, cursorX, yStart, cell.getWidth(), 5 , Color.RED);
+                    //					PDStreamUtils.rect(stream, cursorX, yStart, cell.getWidth(), 5 , Color.RED);
                     // bottom
-                    //					PDStreamUtils.rect(tableContentStream, cursorX, yStart - cell.getHeight(), cell.getWidth(), -5 , Color.RED);
+                    //					PDStreamUtils.rect(stream, cursorX, yStart - cell.getHeight(), cell.getWidth(), -5 , Color.RED);
                     //right 
-                    //					PDStreamUtils.rect(tableContentStream, cursorX + cell.getWidth() - 5, yStart, 5, cell.getHeight(), Color.RED);
+                    //					PDStreamUtils.rect(stream, cursorX + cell.getWidth() - 5, yStart, 5, cell.getHeight(), Color.RED);
 
                     // position at top of current cell descending by font height - font descent, because we are
                     // positioning the base line here
@@ -448,13 +861,13 @@ public abstract class Table<T extends PDPage> {
                     if (drawDebug) {
                         // @formatter:off 
                         // top padding
-                        PDStreamUtils.rect(tableContentStream, cursorX + (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()), yStart - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()), cell.getWidth() - (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()) - (cell.getRightBorder() == null ? 0 : cell.getRightBorder().getWidth()), cell.getTopPadding(), Color.RED);
+                        PDStreamUtils.rect(stream, cursorX + (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()), yStart - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()), cell.getWidth() - (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()) - (cell.getRightBorder() == null ? 0 : cell.getRightBorder().getWidth()), cell.getTopPadding(), Color.RED);
                         // bottom padding
-                        PDStreamUtils.rect(tableContentStream, cursorX + (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()), yStart - cell.getHeight() + (cell.getBottomBorder() == null ? 0 : cell.getBottomBorder().getWidth()) + cell.getBottomPadding(), cell.getWidth() - (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()) - (cell.getRightBorder() == null ? 0 : cell.getRightBorder().getWidth()), cell.getBottomPadding(), Color.RED);
+                        PDStreamUtils.rect(stream, cursorX + (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()), yStart - cell.getHeight() + (cell.getBottomBorder() == null ? 0 : cell.getBottomBorder().getWidth()) + cell.getBottomPadding(), cell.getWidth() - (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()) - (cell.getRightBorder() == null ? 0 : cell.getRightBorder().getWidth()), cell.getBottomPadding(), Color.RED);
                         // left padding
-                        PDStreamUtils.rect(tableContentStream, cursorX + (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()), yStart - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()), cell.getLeftPadding(), cell.getHeight() - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()) - (cell.getBottomBorder() == null ? 0 : cell.getBottomBorder().getWidth()), Color.RED);
+                        PDStreamUtils.rect(stream, cursorX + (cell.getLeftBorder() == null ? 0 : cell.getLeftBorder().getWidth()), yStart - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()), cell.getLeftPadding(), cell.getHeight() - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()) - (cell.getBottomBorder() == null ? 0 : cell.getBottomBorder().getWidth()), Color.RED);
                         // right padding
-                        PDStreamUtils.rect(tableContentStream, cursorX + cell.getWidth() - (cell.getRightBorder() == null ? 0 : cell.getRightBorder().getWidth()), yStart - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()), -cell.getRightPadding(), cell.getHeight() - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()) - (cell.getBottomBorder() == null ? 0 : cell.getBottomBorder().getWidth()), Color.RED);
+                        PDStreamUtils.rect(stream, cursorX + cell.getWidth() - (cell.getRightBorder() == null ? 0 : cell.getRightBorder().getWidth()), yStart - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()), -cell.getRightPadding(), cell.getHeight() - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth()) - (cell.getBottomBorder() == null ? 0 : cell.getBottomBorder().getWidth()), Color.RED);
                         // @formatter:on 
                     }
 
@@ -493,11 +906,7 @@ public abstract class Table<T extends PDPage> {
                 float lineStartX = cursorX;
                 float lineStartY = cursorY;
 
-                // if it is head row or if it is header cell then please use bold font
-                if (row.equals(header) || cell.isHeaderCell()) {
-                    this.tableContentStream.setFont(cell.getParagraph().getFont(true, false), cell.getFontSize());
-                }
-                this.tableContentStream.setNonStrokingColor(cell.getTextColor());
+                stream.setNonStrokingColor(cell.getTextColor());
                 
                 int italicCounter = 0;
                 int boldCounter = 0;
@@ -559,26 +968,22 @@ public abstract class Table<T extends PDPage> {
                                 cursorX += Float.parseFloat(token.getData());
                                 break;
                             case ORDERING:
-                                this.tableContentStream.beginText();
                                 currentFont = cell.getParagraph().getFont(boldCounter > 0, italicCounter > 0);
-                                this.tableContentStream.setFont(currentFont, cell.getFontSize());
                                 if (cell.isTextRotated()) {
+                                    stream.beginText();
+                                    stream.setFont(currentFont, cell.getFontSize());
                                     final AffineTransform transform = AffineTransform.getTranslateInstance(cursorX,
                                             cursorY);
                                     transform.concatenate(AffineTransform.getRotateInstance(Math.PI * 0.5f));
                                     transform.concatenate(AffineTransform.getTranslateInstance(-cursorX, -cursorY));
-                                    tableContentStream.setTextMatrix(new Matrix(transform));
-                                    tableContentStream.newLineAtOffset(cursorX, cursorY);
-                                    this.tableContentStream.showText(token.getData());
-                                    this.tableContentStream.endText();
-                                    this.tableContentStream.closePath();
-                                    cursorY += currentFont.getStringWidth(token.getData()) / 1000 * cell.getFontSize();
+                                    stream.setTextMatrix(new Matrix(transform));
+                                    stream.newLineAtOffset(cursorX, cursorY);
+                                    stream.showText(token.getData());
+                                    stream.endText();
+                                    cursorY += FontUtils.getStringWidth(currentFont, token.getData(), cell.getFontSize());
                                 } else {
-                                    this.tableContentStream.newLineAtOffset(cursorX, cursorY);
-                                    this.tableContentStream.showText(token.getData());
-                                    this.tableContentStream.endText();
-                                    this.tableContentStream.closePath();
-                                    cursorX += currentFont.getStringWidth(token.getData()) / 1000 * cell.getFontSize();
+                                    cursorX = textWriter.showText(token.getData(), currentFont, cell.getFontSize(),
+                                            cursorX, cursorY);
                                 }
                                 break;
                             case BULLET:
@@ -586,55 +991,49 @@ public abstract class Table<T extends PDPage> {
                                 if (!cell.getAlign().equals(HorizontalAlignment.LEFT)) {
                                     continue;
                                 }
+                                // the bullet is a path, which can't be drawn inside a text object
+                                textWriter.end();
                                 if (cell.isTextRotated()) {
                                     // move cursorX up because bullet needs to be in the middle of font height
                                     cursorX += FontUtils.getHeight(currentFont, cell.getFontSize()) / 2;
-                                    PDStreamUtils.rect(tableContentStream, cursorX, cursorY,
-                                            currentFont.getStringWidth(token.getData()) / 1000 * cell.getFontSize(),
-                                            currentFont.getStringWidth(" ") / 1000 * cell.getFontSize(),
+                                    PDStreamUtils.rect(stream, cursorX, cursorY,
+                                            FontUtils.getStringWidth(currentFont, token.getData(), cell.getFontSize()),
+                                            FontUtils.getStringWidth(currentFont, " ", cell.getFontSize()),
                                             cell.getTextColor());
                                     // move cursorY for two characters (one for bullet, one for space after bullet)
-                                    cursorY += 2 * currentFont.getStringWidth(" ") / 1000 * cell.getFontSize();
+                                    cursorY += 2 * FontUtils.getStringWidth(currentFont, " ", cell.getFontSize());
                                     // return cursorY to his original place
                                     cursorX -= FontUtils.getHeight(currentFont, cell.getFontSize()) / 2;
                                 } else {
                                     // move cursorY up because bullet needs to be in the middle of font height
                                     cursorY += FontUtils.getHeight(currentFont, cell.getFontSize()) / 2;
-                                    PDStreamUtils.rect(tableContentStream, cursorX, cursorY,
-                                            currentFont.getStringWidth(token.getData()) / 1000 * cell.getFontSize(),
-                                            currentFont.getStringWidth(" ") / 1000 * cell.getFontSize(),
+                                    PDStreamUtils.rect(stream, cursorX, cursorY,
+                                            FontUtils.getStringWidth(currentFont, token.getData(), cell.getFontSize()),
+                                            FontUtils.getStringWidth(currentFont, " ", cell.getFontSize()),
                                             cell.getTextColor());
                                     // move cursorX for two characters (one for bullet, one for space after bullet)
-                                    cursorX += 2 * currentFont.getStringWidth(" ") / 1000 * cell.getFontSize();
+                                    cursorX += 2 * FontUtils.getStringWidth(currentFont, " ", cell.getFontSize());
                                     // return cursorY to his original place
                                     cursorY -= FontUtils.getHeight(currentFont, cell.getFontSize()) / 2;
                                 }
                                 break;
                             case TEXT:
-                                this.tableContentStream.beginText();
                                 currentFont = cell.getParagraph().getFont(boldCounter > 0, italicCounter > 0);
-                                this.tableContentStream.setFont(currentFont, cell.getFontSize());
                                 if (cell.isTextRotated()) {
+                                    stream.beginText();
+                                    stream.setFont(currentFont, cell.getFontSize());
                                     final AffineTransform transform = AffineTransform.getTranslateInstance(cursorX,
                                             cursorY);
                                     transform.concatenate(AffineTransform.getRotateInstance(Math.PI * 0.5f));
                                     transform.concatenate(AffineTransform.getTranslateInstance(-cursorX, -cursorY));
-                                    tableContentStream.setTextMatrix(new Matrix(transform));
-                                    tableContentStream.newLineAtOffset(cursorX, cursorY);
-                                    this.tableContentStream.showText(token.getData());
-                                    this.tableContentStream.endText();
-                                    this.tableContentStream.closePath();
-                                    cursorY += currentFont.getStringWidth(token.getData()) / 1000 * cell.getFontSize();
+                                    stream.setTextMatrix(new Matrix(transform));
+                                    stream.newLineAtOffset(cursorX, cursorY);
+                                    stream.showText(token.getData());
+                                    stream.endText();
+                                    cursorY += FontUtils.getStringWidth(currentFont, token.getData(), cell.getFontSize());
                                 } else {
-                                    try {
-                                        this.tableContentStream.newLineAtOffset(cursorX, cursorY);
-                                        this.tableContentStream.showText(token.getData());
-                                        this.tableContentStream.endText();
-                                        this.tableContentStream.closePath();
-                                        cursorX += currentFont.getStringWidth(token.getData()) / 1000 * cell.getFontSize();
-                                    } catch (IOException e) {
-                                        throw new UncheckedIOException(e);
-                                    }
+                                    cursorX = textWriter.showText(token.getData(), currentFont, cell.getFontSize(),
+                                            cursorX, cursorY);
                                 }
                                 break;
                         }
@@ -645,17 +1044,15 @@ public abstract class Table<T extends PDPage> {
                         cursorY = cursorY - cell.getParagraph().getFontHeight() * cell.getLineSpacing();
                     }
                 }
+                textWriter.end();
             }
             // set cursor to the start of this cell plus its width to advance to the next cell
             cursorX = cellStartX + cell.getWidth();
         }
-        // Set Y position for next row
-        yStart = yStart - row.getHeight();
-        row.setYStart(yStart);
-        
     }
     
-    private void drawVerticalLines(Row<T> row) throws IOException {
+    private void drawVerticalLines(Row<T> row, float yStart, PageContentStreamOptimized stream,
+            BorderPlanner borders, FillPlanner fills) throws IOException {
         float xStart = margin;
 
         // give an extra margin to the latest cell
@@ -665,16 +1062,20 @@ public abstract class Table<T extends PDPage> {
         while (cellIterator.hasNext()) {
             Cell<T> cell = cellIterator.next();
             
-            fillCellColor(cell, yStart, xStart, cellIterator);
+            fillCellColor(fills, cell, yStart, xStart, cellIterator);
             
-            drawCellBorders(row, cell, xStart, xEnd);
+            drawCellBorders(borders, row, cell, xStart, xEnd, yStart);
             
             xStart += getWidth(cell, cellIterator);
         }
         
+        // fills and borders of a row must be drawn before its content, so they are planned per row
+        fills.draw(stream);
+        borders.draw(stream);
     }
     
-    private void drawCellBorders(Row<T> row, Cell<T> cell, float xStart, float xEnd) throws IOException {
+    private void drawCellBorders(BorderPlanner borders, Row<T> row, Cell<T> cell, float xStart, float xEnd,
+            float yStart) {
         
         float yEnd = yStart - row.getHeight();
 
@@ -682,58 +1083,49 @@ public abstract class Table<T extends PDPage> {
         LineStyle topBorder = cell.getTopBorder();
         if (topBorder != null) {
             float y = yStart - topBorder.getWidth() / 2;
-            drawLine(xStart, y, xStart + cell.getWidth(), y, topBorder);
+            drawLine(borders, xStart, y, xStart + cell.getWidth(), y, topBorder);
         }
 
         // right
         LineStyle rightBorder = cell.getRightBorder();
         if (rightBorder != null) {
             float x = xStart + cell.getWidth() - rightBorder.getWidth() / 2;
-            drawLine(x, yStart - (topBorder == null ? 0 : topBorder.getWidth()), x, yEnd, rightBorder);
+            drawLine(borders, x, yStart - (topBorder == null ? 0 : topBorder.getWidth()), x, yEnd, rightBorder);
         }
 
         // bottom
         LineStyle bottomBorder = cell.getBottomBorder();
         if (bottomBorder != null) {
             float y = yEnd + bottomBorder.getWidth() / 2;
-            drawLine(xStart, y, xStart + cell.getWidth() - (rightBorder == null ? 0 : rightBorder.getWidth()), y,
-                    bottomBorder);
+            drawLine(borders, xStart, y,
+                    xStart + cell.getWidth() - (rightBorder == null ? 0 : rightBorder.getWidth()), y, bottomBorder);
         }
 
         // left
         LineStyle leftBorder = cell.getLeftBorder();
         if (leftBorder != null) {
             float x = xStart + leftBorder.getWidth() / 2;
-            drawLine(x, yStart, x, yEnd + (bottomBorder == null ? 0 : bottomBorder.getWidth()), leftBorder);
+            drawLine(borders, x, yStart, x, yEnd + (bottomBorder == null ? 0 : bottomBorder.getWidth()), leftBorder);
         }
         
     }
     
-    private void drawLine(float xStart, float yStart, float xEnd, float yEnd, LineStyle border) throws IOException {
-        PDStreamUtils.setLineStyles(tableContentStream, border);
-        tableContentStream.moveTo(xStart, yStart);
-        tableContentStream.lineTo(xEnd, yEnd);
-        tableContentStream.stroke();
-        tableContentStream.closePath();
+    private void drawLine(BorderPlanner borders, float xStart, float yStart, float xEnd, float yEnd,
+            LineStyle border) {
+        // the borders of a row are stroked together before the row's content
+        borders.addLine(xStart, yStart, xEnd, yEnd, border);
     }
     
-    private void fillCellColor(Cell<T> cell, float yStart, float xStart, Iterator<Cell<T>> cellIterator)
-            throws IOException {
+    private void fillCellColor(FillPlanner fills, Cell<T> cell, float yStart, float xStart,
+            Iterator<Cell<T>> cellIterator) {
         
         if (cell.getFillColor() != null) {
-            this.tableContentStream.setNonStrokingColor(cell.getFillColor());
-
             // y start is bottom pos
             yStart = yStart - cell.getHeight();
             float height = cell.getHeight() - (cell.getTopBorder() == null ? 0 : cell.getTopBorder().getWidth());
             
             float cellWidth = getWidth(cell, cellIterator);
-            this.tableContentStream.addRect(xStart, yStart, cellWidth, height);
-            this.tableContentStream.fill();
-            this.tableContentStream.closePath();
-
-            // Reset NonStroking Color to default value
-            this.tableContentStream.setNonStrokingColor(Color.BLACK);
+            fills.addRect(xStart, yStart, cellWidth, height, cell.getFillColor());
         }
     }
     
@@ -753,8 +1145,16 @@ public abstract class Table<T extends PDPage> {
         }
     }
     
+    private void closeContentStream() throws IOException {
+        if (pageContents != null) {
+            // no stream is open, the page content is generated by draw(Executor)
+            return;
+        }
+        tableContentStream.close();
+    }
+    
     private void endTable() throws IOException {
-        this.tableContentStream.close();
+        closeContentStream();
     }
     
     public T getCurrentPage() {
@@ -762,21 +1162,6 @@ public abstract class Table<T extends PDPage> {
         return this.currentPage;
     }
     
-    private boolean isEndOfPage(Row<T> row) {
-        float currentY = yStart - row.getHeight();
-        boolean isEndOfPage = currentY <= pageBottomMargin;
-        if (isEndOfPage) {
-            setTableIsBroken(true);
-        }
-
-        // If we are closer than bottom margin, consider this as
-        // the end of the currentPage
-        // If you add rows that are higher then bottom margin, this needs to be
-        // checked
-        // manually using getNextYPos
-        return isEndOfPage;
-    }
-    
     private boolean isEndOfPage(float freeSpaceForPageBreak) {
         float currentY = yStart - freeSpaceForPageBreak;
         boolean isEndOfPage = currentY <= pageBottomMargin;
@@ -787,10 +1172,14 @@ public abstract class Table<T extends PDPage> {
     }
     
     private void pageBreak() throws IOException {
-        tableContentStream.close();
+        closeContentStream();
         this.yStart = yStartNewPage - pageTopMargin;
         this.currentPage = createNewPage();
-        this.tableContentStream = createPdPageContentStream();
+        if (pageContents != null) {
+            pageContents.add(new PageContent(currentPage));
+        } else {
+            this.tableContentStream = createPdPageContentStream();
+        }
     }
     
     private void addBookmark(PDOutlineItem bookmark) {
@@ -845,17 +1234,17 @@ public abstract class Table<T extends PDPage> {
      */
     public float getMinimumHeight() {
         float height = 0.0f;
-        int firstDataRowIndex = 0;
-        if (!header.isEmpty()) {
-            for (Row<T> headerRow : header) {
-                // count all header rows height
-                height += headerRow.getHeight();
-                firstDataRowIndex++;
-            }
+        for (Row<T> headerRow : header) {
+            // count all header rows height
+            height += headerRow.getHeight();
         }
         
-        if (rows.size() > firstDataRowIndex) {
-            height += rows.get(firstDataRowIndex).getHeight();
+        // flushed rows are gone, header rows may still be pending
+        for (Row<T> row : rows) {
+            if (!header.contains(row)) {
+                height += row.getHeight();
+                break;
+            }
         }
         
         return height;
@@ -931,5 +1320,184 @@ public abstract class Table<T extends PDPage> {
     public List<T> getPages() {
         return pages;
     }
-    
+
+    public LayoutCache getLayoutCache() {
+        return layoutCache;
+    }
+
+    /**
+     * <p>
+     * Sets the {@link LayoutCache} used by the cells of this table, or
+     * {@code null} to lay out every cell on its own. Cells whose paragraph
+     * was already laid out keep their layout.
+     * </p>
+     *
+     * @param layoutCache designated {@link LayoutCache}
+     */
+    public void setLayoutCache(LayoutCache layoutCache) {
+        this.layoutCache = layoutCache;
+    }
+
+    private PageContent currentPageContent() {
+        return pageContents.get(pageContents.size() - 1);
+    }
+
+    /**
+     * <p>
+     * Content of one page drawn by {@link Table#draw(Executor)}. Everything
+     * which belongs to the {@link PDDocument} (the page, its resources, fonts
+     * to subset, images) is prepared and attached on the calling thread, the
+     * task itself only paints the rows into a private buffer with private
+     * resources.
+     * </p>
+     */
+    private final class PageContent implements Callable<byte[]> {
+
+        private final T page;
+        private final COSDictionary resources;
+        private final List<Row<T>> pageRows = new ArrayList<>();
+        private final List<Float> rowYStarts = new ArrayList<>();
+        private final Map<Image, PDImageXObject> images = new IdentityHashMap<>();
+        private final Set<PDFont> fonts = Collections.newSetFromMap(new IdentityHashMap<PDFont, Boolean>());
+        private PDFormXObject pageHeaderForm;
+
+        PageContent(T page) {
+            this.page = page;
+            this.resources = copyResources(page.getResources());
+        }
+
+        void setHeaderForm(PDFormXObject form) {
+            this.pageHeaderForm = form;
+        }
+
+        void addRow(Row<T> row, float rowYStart) throws IOException {
+            pageRows.add(row);
+            rowYStarts.add(rowYStart);
+            if (!drawContent) {
+                return;
+            }
+            for (Cell<T> cell : row.getCells()) {
+                if (cell instanceof ImageCell) {
+                    Image image = ((ImageCell<T>) cell).getImage();
+                    if (!images.containsKey(image)) {
+                        images.put(image, image.createImageXObject(document));
+                    }
+                } else {
+                    Paragraph paragraph = cell.getParagraph();
+                    registerFont(paragraph.getFont(false, false));
+                    registerFont(paragraph.getFont(true, false));
+                    registerFont(paragraph.getFont(false, true));
+                    registerFont(paragraph.getFont(true, true));
+                }
+            }
+        }
+
+        /**
+         * <p>
+         * pdfbox adds a font to the fonts the document subsets when it is set
+         * on a content stream. Setting it on a throwaway stream here means the
+         * tasks only find it already there.
+         * </p>
+         */
+        private void registerFont(PDFont font) throws IOException {
+            if (font == null || !font.willBeSubset() || !fonts.add(font)) {
+                return;
+            }
+            final PDAppearanceStream scratch = new PDAppearanceStream(new COSStream());
+            scratch.setResources(new PDResources());
+            try (PDPageContentStream stream = new PDPageContentStream(document, scratch,
+                    new ByteArrayOutputStream())) {
+                stream.setFont(font, 1);
+            }
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            if (pageHeaderForm == null && pageRows.isEmpty()) {
+                return null;
+            }
+            final BorderPlanner borders = new BorderPlanner();
+            final FillPlanner fills = new FillPlanner();
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            // a page of a throwaway document formats numbers exactly as the
+            // sequential draw does, the fonts are registered with the real one
+            try (PDDocument scratch = new PDDocument()) {
+                final PDPage canvas = new PDPage();
+                canvas.setResources(new PDResources(resources));
+                try (PageContentStreamOptimized stream = new PageContentStreamOptimized(
+                        new PDPageContentStream(scratch, canvas, PDPageContentStream.AppendMode.OVERWRITE, false))) {
+                    if (pageHeaderForm != null) {
+                        stream.drawForm(pageHeaderForm);
+                    }
+                    for (int i = 0; i < pageRows.size(); i++) {
+                        if (drawLines) {
+                            drawVerticalLines(pageRows.get(i), rowYStarts.get(i), stream, borders, fills);
+                        }
+                        if (drawContent) {
+                            drawCellContent(pageRows.get(i), rowYStarts.get(i), stream, images);
+                        }
+                    }
+                }
+                try (InputStream content = canvas.getContents();
+                        OutputStream out = new DeflaterOutputStream(buffer)) {
+                    IOUtils.copy(content, out);
+                }
+            }
+            return buffer.toByteArray();
+        }
+
+        /**
+         * <p>
+         * Appends the generated, already compressed content to the page, the
+         * same way an appending {@link PDPageContentStream} does.
+         * </p>
+         */
+        void attach(byte[] content) throws IOException {
+            if (content == null) {
+                return;
+            }
+            final COSStream stream = document.getDocument().createCOSStream();
+            try (OutputStream out = stream.createRawOutputStream()) {
+                out.write(content);
+            }
+            stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+
+            final COSDictionary pageDictionary = page.getCOSObject();
+            final COSBase contents = pageDictionary.getDictionaryObject(COSName.CONTENTS);
+            if (contents == null) {
+                pageDictionary.setItem(COSName.CONTENTS, stream);
+            } else if (contents instanceof COSArray) {
+                ((COSArray) contents).add(stream);
+            } else {
+                final COSArray array = new COSArray();
+                array.add(pageDictionary.getItem(COSName.CONTENTS));
+                array.add(stream);
+                pageDictionary.setItem(COSName.CONTENTS, array);
+            }
+            page.setResources(new PDResources(resources));
+        }
+    }
+
+    /**
+     * <p>
+     * Copies page resources, including the dictionaries of each resource
+     * type, so resources can be added to the copy without touching the page.
+     * </p>
+     */
+    private static COSDictionary copyResources(PDResources pageResources) {
+        final COSDictionary copy = new COSDictionary();
+        if (pageResources != null) {
+            final COSDictionary source = pageResources.getCOSObject();
+            for (COSName key : source.keySet()) {
+                final COSBase value = source.getDictionaryObject(key);
+                if (value instanceof COSDictionary) {
+                    copy.setItem(key, new COSDictionary((COSDictionary) value));
+                } else {
+                    copy.setItem(key, source.getItem(key));
+                }
+            }
+        }
+        return copy;
+    }
+
 }
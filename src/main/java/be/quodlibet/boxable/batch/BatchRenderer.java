@@ -0,0 +1,112 @@
+package be.quodlibet.boxable.batch;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import com.google.common.base.Throwables;
+
+/**
+ * <p>
+ * Renders many small reports concurrently, one {@link PDDocument} per
+ * {@link ReportJob}. The jobs run on designated {@link Executor}, e.g. a
+ * bounded thread pool or a virtual thread per task executor.
+ * </p>
+ * <p>
+ * Everything that is expensive to build and immutable once built should be
+ * created once and shared by the jobs instead of per document: the font
+ * metrics of {@link be.quodlibet.boxable.utils.FontUtils} are shared by all
+ * documents already, a {@link be.quodlibet.boxable.LayoutCache} can be set
+ * on the tables of all jobs and a configured
+ * {@link be.quodlibet.boxable.datatable.DataTable} can be the template of the
+ * data tables of all jobs.
+ * </p>
+ */
+public final class BatchRenderer {
+
+	private final Executor executor;
+
+	/**
+	 * @param executor
+	 *            {@link Executor} running the jobs
+	 */
+	public BatchRenderer(final Executor executor) {
+		this.executor = checkNotNull(executor, "Executor");
+	}
+
+	/**
+	 * <p>
+	 * Renders designated jobs and waits until all of them are done. A failing
+	 * job doesn't stop the others, its failure is part of its result.
+	 * </p>
+	 *
+	 * @param jobs
+	 *            jobs to render
+	 * @return results in the order of the jobs
+	 * @throws IllegalStateException
+	 *             if the current thread is interrupted while waiting for the
+	 *             jobs
+	 */
+	public BatchResult renderAll(final List<? extends ReportJob> jobs) {
+		final long start = System.nanoTime();
+		final List<FutureTask<ReportResult>> tasks = new ArrayList<>(jobs.size());
+		for (final ReportJob job : jobs) {
+			final FutureTask<ReportResult> task = new FutureTask<>(new Callable<ReportResult>() {
+				@Override
+				public ReportResult call() {
+					return render(job);
+				}
+			});
+			tasks.add(task);
+			executor.execute(task);
+		}
+		final List<ReportResult> results = new ArrayList<>(jobs.size());
+		try {
+			for (final FutureTask<ReportResult> task : tasks) {
+				results.add(task.get());
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while rendering reports", e);
+		} catch (final ExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		}
+		return new BatchResult(results, System.nanoTime() - start);
+	}
+
+	/**
+	 * <p>
+	 * Renders designated job on the current thread.
+	 * </p>
+	 *
+	 * @param job
+	 *            job to render
+	 * @return result of the job
+	 */
+	public static ReportResult render(final ReportJob job) {
+		final long start = System.nanoTime();
+		long saveStart = 0;
+		try (PDDocument document = new PDDocument()) {
+			job.render(document);
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			saveStart = System.nanoTime();
+			document.save(out);
+			final long end = System.nanoTime();
+			return ReportResult.success(job, out.toByteArray(), document.getNumberOfPages(), end - start,
+					end - saveStart);
+		} catch (final IOException | RuntimeException e) {
+			final long end = System.nanoTime();
+			return ReportResult.failure(job, e, end - start, saveStart == 0 ? 0 : end - saveStart);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package be.quodlibet.boxable.batch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Results of all jobs of one {@link BatchRenderer#renderAll(List)} call, in
+ * the order of the jobs, with throughput figures for the whole batch.
+ * </p>
+ */
+public final class BatchResult {
+
+	private final List<ReportResult> results;
+	private final long elapsedNanos;
+	private final long saveNanos;
+	private final int failureCount;
+	private final int pageCount;
+	private final long byteCount;
+
+	BatchResult(final List<ReportResult> results, final long elapsedNanos) {
+		this.results = Collections.unmodifiableList(results);
+		this.elapsedNanos = elapsedNanos;
+		int failures = 0;
+		int pages = 0;
+		long bytes = 0;
+		long save = 0;
+		for (final ReportResult result : results) {
+			save += result.getSaveNanos();
+			if (result.isSuccessful()) {
+				pages += result.getPageCount();
+				bytes += result.getBytes().length;
+			} else {
+				failures++;
+			}
+		}
+		this.failureCount = failures;
+		this.pageCount = pages;
+		this.byteCount = bytes;
+		this.saveNanos = save;
+	}
+
+	/**
+	 * @return result of every job, in the order the jobs were given
+	 */
+	public List<ReportResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return number of jobs which failed
+	 */
+	public int getFailureCount() {
+		return failureCount;
+	}
+
+	/**
+	 * @return number of pages of all saved documents
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * @return size of all saved documents, in bytes
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * @return time all jobs spent saving their documents, in nanoseconds
+	 */
+	public long getSaveNanos() {
+		return saveNanos;
+	}
+
+	/**
+	 * @return wall-clock time of the whole batch, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return jobs completed per second of wall-clock time
+	 */
+	public double getJobsPerSecond() {
+		return perSecond(results.size());
+	}
+
+	/**
+	 * @return pages rendered per second of wall-clock time
+	 */
+	public double getPagesPerSecond() {
+		return perSecond(pageCount);
+	}
+
+	private double perSecond(final long count) {
+		return elapsedNanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+}
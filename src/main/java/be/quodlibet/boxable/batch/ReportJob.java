@@ -0,0 +1,29 @@
+package be.quodlibet.boxable.batch;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * <p>
+ * One report rendered by a {@link BatchRenderer}. A job draws its tables
+ * into the empty document it is given, the renderer saves and closes the
+ * document afterwards.
+ * </p>
+ * <p>
+ * Jobs run concurrently. Whatever they share (font metrics, a
+ * {@link be.quodlibet.boxable.LayoutCache}, a template
+ * {@link be.quodlibet.boxable.datatable.DataTable}) must be safe for
+ * concurrent use or only be read.
+ * </p>
+ */
+public interface ReportJob {
+
+	/**
+	 * @param document
+	 *            empty {@link PDDocument} the report is drawn into
+	 * @throws IOException
+	 *             if the report can't be drawn
+	 */
+	void render(PDDocument document) throws IOException;
+}
@@ -0,0 +1,90 @@
+package be.quodlibet.boxable.batch;
+
+/**
+ * <p>
+ * Outcome of one {@link ReportJob}: either the saved document or the
+ * failure which stopped the job, and how long rendering and saving took.
+ * </p>
+ */
+public final class ReportResult {
+
+	private final ReportJob job;
+	private final byte[] bytes;
+	private final int pageCount;
+	private final Throwable failure;
+	private final long renderNanos;
+	private final long saveNanos;
+
+	private ReportResult(final ReportJob job, final byte[] bytes, final int pageCount, final Throwable failure,
+			final long renderNanos, final long saveNanos) {
+		this.job = job;
+		this.bytes = bytes;
+		this.pageCount = pageCount;
+		this.failure = failure;
+		this.renderNanos = renderNanos;
+		this.saveNanos = saveNanos;
+	}
+
+	static ReportResult success(final ReportJob job, final byte[] bytes, final int pageCount, final long renderNanos,
+			final long saveNanos) {
+		return new ReportResult(job, bytes, pageCount, null, renderNanos, saveNanos);
+	}
+
+	static ReportResult failure(final ReportJob job, final Throwable failure, final long renderNanos,
+			final long saveNanos) {
+		return new ReportResult(job, null, 0, failure, renderNanos, saveNanos);
+	}
+
+	/**
+	 * @return the rendered job
+	 */
+	public ReportJob getJob() {
+		return job;
+	}
+
+	/**
+	 * @return {@code true} if the document was rendered and saved
+	 */
+	public boolean isSuccessful() {
+		return failure == null;
+	}
+
+	/**
+	 * @return the saved document, {@code null} if the job failed
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return number of pages of the saved document, {@code 0} if the job
+	 *         failed
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * @return the exception which stopped the job, {@code null} if it
+	 *         succeeded
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return time spent rendering and saving the document, in nanoseconds
+	 */
+	public long getRenderNanos() {
+		return renderNanos;
+	}
+
+	/**
+	 * @return time spent saving the document, in nanoseconds. Part of
+	 *         {@link #getRenderNanos()}, dominated by font subsetting unless
+	 *         fonts are embedded whole.
+	 */
+	public long getSaveNanos() {
+		return saveNanos;
+	}
+}
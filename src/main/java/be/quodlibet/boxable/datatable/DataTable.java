@@ -7,10 +7,12 @@ import be.quodlibet.boxable.Row;
 import be.quodlibet.boxable.Table;
 import be.quodlibet.boxable.VerticalAlignment;
 import be.quodlibet.boxable.line.LineStyle;
+import be.quodlibet.boxable.utils.FontProgramCache;
 import be.quodlibet.boxable.utils.FontUtils;
 import java.awt.Color;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.csv.CSVFormat;
@@ -81,6 +83,73 @@ public class DataTable {
         }
     }
 
+    /**
+     * <p>
+     * Create a DataTable whose template cells, fonts and font size are copied
+     * from designated DataTable. No dummy document is needed to create the
+     * template cells, so one configured DataTable can be the template of many
+     * tables. The template is only read, it may be shared by tables which are
+     * filled on different threads as long as it isn't changed anymore.
+     * </p>
+     * <p>
+     * The template may only use the Standard 14 fonts and fonts loaded with
+     * {@link FontUtils#loadFont(PDDocument, String)}, the latter are loaded
+     * again into the document of the table, see
+     * {@link FontProgramCache#rebind(PDDocument, PDFont)}.
+     * </p>
+     *
+     * @param table {@link Table}
+     * @param template {@link DataTable} whose template cells are copied
+     * @throws IOException If the template cells can't be created
+     * @throws IllegalArgumentException If the template uses a font of its
+     *             own document which can't be loaded again
+     */
+    public DataTable(Table table, DataTable template) throws IOException {
+        this.table = table;
+        Map<PDFont, PDFont> fonts = new IdentityHashMap<>();
+        this.bodyFont = rebind(fonts, template.bodyFont);
+        this.headerFont = rebind(fonts, template.headerFont);
+        this.fontSize = template.fontSize;
+
+        // the dummy table only holds the row of the template cells, it never draws and adds no page
+        BaseTable dummyTable = new BaseTable(10f, 10f, 10f, table.getWidth(), 10f, table.document, new PDPage(), false,
+                false);
+        Row dr = dummyTable.createRow(0f);
+        headerCellTemplate = copyTemplate(dr, template.headerCellTemplate, fonts);
+        dataCellTemplateEven = copyTemplate(dr, template.dataCellTemplateEven, fonts);
+        dataCellTemplateOdd = copyTemplate(dr, template.dataCellTemplateOdd, fonts);
+        firstColumnCellTemplate = copyTemplate(dr, template.firstColumnCellTemplate, fonts);
+        lastColumnCellTemplate = copyTemplate(dr, template.lastColumnCellTemplate, fonts);
+        defaultCellTemplate = copyTemplate(dr, template.defaultCellTemplate, fonts);
+    }
+
+    private Cell copyTemplate(Row row, Cell source, Map<PDFont, PDFont> fonts) throws IOException {
+        Cell cell = row.createCell(10f, "A", source.getAlign(), source.getValign(), fontSize);
+        cell.copyCellStyle(source);
+        // copyCellStyle only copies the top border
+        cell.setLeftBorderStyle(source.getLeftBorder());
+        cell.setRightBorderStyle(source.getRightBorder());
+        cell.setTopBorderStyle(source.getTopBorder());
+        cell.setBottomBorderStyle(source.getBottomBorder());
+        cell.setFont(rebind(fonts, source.getFont()));
+        cell.setFontBold(rebind(fonts, source.getFontBold()));
+        cell.setLeftPadding(source.getLeftPadding());
+        cell.setRightPadding(source.getRightPadding());
+        cell.setTopPadding(source.getTopPadding());
+        cell.setBottomPadding(source.getBottomPadding());
+        return cell;
+    }
+
+    // each font of the template is loaded once into the document of the table
+    private PDFont rebind(Map<PDFont, PDFont> fonts, PDFont font) throws IOException {
+        PDFont rebound = fonts.get(font);
+        if (rebound == null && font != null) {
+            rebound = FontProgramCache.rebind(table.document, font);
+            fonts.put(font, rebound);
+        }
+        return rebound;
+    }
+
     /**
      * <p>
      * Default cell styles for all cells. By default, only the header cell has a
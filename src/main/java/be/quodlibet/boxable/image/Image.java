@@ -5,9 +5,9 @@ import java.io.IOException;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
 import be.quodlibet.boxable.utils.ImageUtils;
 
 public class Image {
@@ -64,10 +64,66 @@ public class Image {
 	 * @throws IOException if loading image fails
 	 */
 	public void draw(final PDDocument doc, final PDPageContentStream stream, float x, float y) throws IOException {
-		PDImageXObject imageXObject = LosslessFactory.createFromImage(doc, image);
+		draw(doc, new PageContentStreamOptimized(stream), x, y);
+	}
+
+	/**
+	 * <p>
+	 * Drawing simple {@link Image} in {@link PageContentStreamOptimized}.
+	 * </p>
+	 * 
+	 * @param doc
+	 *            {@link PDDocument} where drawing will be applied
+	 * @param stream
+	 *            {@link PageContentStreamOptimized} where drawing will be applied
+	 * @param x
+	 *            X coordinate for image drawing
+	 * @param y
+	 *            Y coordinate for image drawing
+	 * @throws IOException if loading image fails
+	 */
+	public void draw(final PDDocument doc, final PageContentStreamOptimized stream, float x, float y)
+			throws IOException {
+		draw(createImageXObject(doc), stream, x, y);
+	}
+
+	/**
+	 * <p>
+	 * Drawing an already embedded {@link Image} in
+	 * {@link PageContentStreamOptimized}.
+	 * </p>
+	 * 
+	 * @param imageXObject
+	 *            this {@link Image}, embedded by
+	 *            {@link #createImageXObject(PDDocument)}
+	 * @param stream
+	 *            {@link PageContentStreamOptimized} where drawing will be applied
+	 * @param x
+	 *            X coordinate for image drawing
+	 * @param y
+	 *            Y coordinate for image drawing
+	 * @throws IOException if drawing the image fails
+	 */
+	public void draw(final PDImageXObject imageXObject, final PageContentStreamOptimized stream, float x, float y)
+			throws IOException {
 		stream.drawImage(imageXObject, x, y - height, width, height);
 	}
 
+	/**
+	 * <p>
+	 * Embeds this {@link Image} in designated {@link PDDocument}. An image is
+	 * embedded once per document, see {@link ImageXObjectCache}.
+	 * </p>
+	 * 
+	 * @param doc
+	 *            {@link PDDocument} where the image will be embedded
+	 * @return The embedded image
+	 * @throws IOException if encoding the image fails
+	 */
+	public PDImageXObject createImageXObject(final PDDocument doc) throws IOException {
+		return ImageXObjectCache.get(doc, image);
+	}
+
 	/**
 	 * <p>
 	 * Method which scale {@link Image} with designated width
@@ -0,0 +1,127 @@
+package be.quodlibet.boxable.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * <p>
+ * Registry of the images embedded in each {@link PDDocument}, so an image
+ * drawn many times (e.g. a logo in every row) is encoded and embedded once
+ * and referenced thereafter. Images are looked up by identity first, then by
+ * a digest of their pixels, so equal images read twice share one embedded
+ * image as well. The registry keeps neither the images nor their pixels.
+ * </p>
+ * <p>
+ * Images must not be modified once they are drawn into a document. Entries
+ * are kept as long as their document is reachable. The registry is safe for
+ * concurrent use, also for several threads drawing into the same document.
+ * </p>
+ */
+public final class ImageXObjectCache {
+
+	/**
+	 * <p>
+	 * Cached images keyed by {@link PDDocument} identity. Keys are weak so
+	 * images of documents which are no longer used can be garbage collected.
+	 * </p>
+	 */
+	private static final ConcurrentMap<PDDocument, ImageXObjectCache> CACHES = new MapMaker().weakKeys().makeMap();
+
+	private final Map<BufferedImage, PDImageXObject> byIdentity = new MapMaker().weakKeys().makeMap();
+
+	private final Map<HashCode, PDImageXObject> byContent = new HashMap<>();
+
+	private ImageXObjectCache() {
+		// the cache must not reference its document, it would never be collected
+	}
+
+	/**
+	 * <p>
+	 * Retrieves the embedded image of designated {@link BufferedImage} in
+	 * designated {@link PDDocument}, embedding it if the document doesn't
+	 * contain it yet.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} where the image will be embedded
+	 * @param image
+	 *            {@link BufferedImage} to embed
+	 * @return The embedded image
+	 * @throws IOException
+	 *             if encoding the image fails
+	 */
+	public static PDImageXObject get(final PDDocument document, final BufferedImage image) throws IOException {
+		ImageXObjectCache cache = CACHES.get(document);
+		if (cache == null) {
+			cache = new ImageXObjectCache();
+			final ImageXObjectCache existing = CACHES.putIfAbsent(document, cache);
+			if (existing != null) {
+				cache = existing;
+			}
+		}
+		return cache.lookup(document, image);
+	}
+
+	/**
+	 * <p>
+	 * Forgets the images embedded in designated {@link PDDocument}, images
+	 * drawn later are embedded again.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} whose images will be forgotten
+	 */
+	public static void clear(final PDDocument document) {
+		CACHES.remove(document);
+	}
+
+	private PDImageXObject lookup(final PDDocument document, final BufferedImage image) throws IOException {
+		final PDImageXObject cached = byIdentity.get(image);
+		if (cached != null) {
+			return cached;
+		}
+		final HashCode digest = digest(image);
+		synchronized (this) {
+			PDImageXObject imageXObject = byContent.get(digest);
+			if (imageXObject == null) {
+				imageXObject = LosslessFactory.createFromImage(document, image);
+				byContent.put(digest, imageXObject);
+			}
+			byIdentity.put(image, imageXObject);
+			return imageXObject;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Content key of an image: a SHA-256 digest of its type, size and pixels,
+	 * read a row at a time so the pixels are never copied as a whole. Images
+	 * with equal digests are taken as equal, their pixels aren't compared.
+	 * </p>
+	 */
+	private static HashCode digest(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final Hasher hasher = Hashing.sha256().newHasher().putInt(image.getType()).putInt(width).putInt(height);
+		final int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for (final int argb : row) {
+				hasher.putInt(argb);
+			}
+		}
+		return hasher.hash();
+	}
+}
@@ -0,0 +1,171 @@
+package be.quodlibet.boxable.line;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
+import be.quodlibet.boxable.utils.PDStreamUtils;
+
+/**
+ * <p>
+ * Collects border lines and strokes them with as few path operators as
+ * possible. Lines are grouped by their {@link LineStyle} and every group is
+ * stroked as one path. Within a solid group horizontal and vertical lines
+ * which lie on the same axis and touch or overlap are merged into a single
+ * line; dashed lines are kept as they are, as the dash pattern restarts at
+ * every line.
+ * </p>
+ * <p>
+ * Groups are stroked in the order their first line was added.
+ * </p>
+ */
+public final class BorderPlanner {
+
+	// merged lines are stored as { axis, start, end } with start <= end
+	private static final int AXIS = 0;
+	private static final int START = 1;
+	private static final int END = 2;
+
+	private static final Comparator<float[]> BY_AXIS_AND_START = new Comparator<float[]>() {
+		@Override
+		public int compare(final float[] a, final float[] b) {
+			final int axis = Float.compare(a[AXIS], b[AXIS]);
+			return axis != 0 ? axis : Float.compare(a[START], b[START]);
+		}
+	};
+
+	private final List<StyleGroup> groups = new ArrayList<>();
+
+	/**
+	 * <p>
+	 * Adds a line which will be stroked with designated style.
+	 * </p>
+	 *
+	 * @param xStart
+	 *            Start X coordinate of the line
+	 * @param yStart
+	 *            Start Y coordinate of the line
+	 * @param xEnd
+	 *            End X coordinate of the line
+	 * @param yEnd
+	 *            End Y coordinate of the line
+	 * @param style
+	 *            The {@link LineStyle} of the line
+	 */
+	public void addLine(final float xStart, final float yStart, final float xEnd, final float yEnd,
+			final LineStyle style) {
+		getGroup(style).add(xStart, yStart, xEnd, yEnd);
+	}
+
+	/**
+	 * @return {@code true} if no lines are waiting to be stroked
+	 */
+	public boolean isEmpty() {
+		return groups.isEmpty();
+	}
+
+	/**
+	 * <p>
+	 * Strokes all collected lines on designated stream and forgets them.
+	 * </p>
+	 *
+	 * @param stream
+	 *            The {@link PageContentStreamOptimized} where the lines are
+	 *            stroked
+	 * @throws IOException
+	 *             If the content stream could not be written
+	 */
+	public void draw(final PageContentStreamOptimized stream) throws IOException {
+		for (final StyleGroup group : groups) {
+			PDStreamUtils.setLineStyles(stream, group.style);
+			group.addPath(stream);
+			stream.stroke();
+		}
+		groups.clear();
+	}
+
+	private StyleGroup getGroup(final LineStyle style) {
+		for (final StyleGroup group : groups) {
+			if (group.style == style || sameStyle(group.style, style)) {
+				return group;
+			}
+		}
+		final StyleGroup group = new StyleGroup(style);
+		groups.add(group);
+		return group;
+	}
+
+	// LineStyle.equals() only compares color and width, not the dash pattern
+	private static boolean sameStyle(final LineStyle a, final LineStyle b) {
+		return a.equals(b) && Arrays.equals(a.getDashArray(), b.getDashArray())
+				&& Float.compare(a.getDashPhase(), b.getDashPhase()) == 0;
+	}
+
+	private static final class StyleGroup {
+
+		private final LineStyle style;
+
+		private final boolean mergeable;
+
+		private final List<float[]> horizontal = new ArrayList<>();
+
+		private final List<float[]> vertical = new ArrayList<>();
+
+		// lines drawn as given: dashed or neither horizontal nor vertical
+		private final List<float[]> other = new ArrayList<>();
+
+		StyleGroup(final LineStyle style) {
+			this.style = style;
+			this.mergeable = style.getDashArray() == null;
+		}
+
+		void add(final float xStart, final float yStart, final float xEnd, final float yEnd) {
+			if (mergeable && yStart == yEnd) {
+				horizontal.add(new float[] { yStart, Math.min(xStart, xEnd), Math.max(xStart, xEnd) });
+			} else if (mergeable && xStart == xEnd) {
+				vertical.add(new float[] { xStart, Math.min(yStart, yEnd), Math.max(yStart, yEnd) });
+			} else {
+				other.add(new float[] { xStart, yStart, xEnd, yEnd });
+			}
+		}
+
+		void addPath(final PageContentStreamOptimized stream) throws IOException {
+			for (final float[] line : merge(horizontal)) {
+				stream.moveTo(line[START], line[AXIS]);
+				stream.lineTo(line[END], line[AXIS]);
+			}
+			for (final float[] line : merge(vertical)) {
+				stream.moveTo(line[AXIS], line[START]);
+				stream.lineTo(line[AXIS], line[END]);
+			}
+			for (final float[] line : other) {
+				stream.moveTo(line[0], line[1]);
+				stream.lineTo(line[2], line[3]);
+			}
+		}
+
+		private static List<float[]> merge(final List<float[]> lines) {
+			if (lines.size() < 2) {
+				return lines;
+			}
+			Collections.sort(lines, BY_AXIS_AND_START);
+			final List<float[]> merged = new ArrayList<>();
+			float[] current = lines.get(0);
+			for (int i = 1; i < lines.size(); i++) {
+				final float[] line = lines.get(i);
+				if (line[AXIS] == current[AXIS] && line[START] <= current[END]) {
+					current[END] = Math.max(current[END], line[END]);
+				} else {
+					merged.add(current);
+					current = line;
+				}
+			}
+			merged.add(current);
+			return merged;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package be.quodlibet.boxable.page;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * <p>
+ * Wrapper around a {@link PDPageContentStream} which keeps track of the
+ * graphics state set through it (stroking and non-stroking color, line width,
+ * line cap, dash pattern, font and font size) and doesn't write operators
+ * which would set the state to what it already is.
+ * </p>
+ * <p>
+ * The state of the wrapped stream is unknown when it is wrapped, so the first
+ * change of each parameter is always written. All drawing on the wrapped
+ * stream has to go through this wrapper, otherwise the tracked state is no
+ * longer accurate.
+ * </p>
+ */
+public final class PageContentStreamOptimized implements Closeable {
+
+	private final PDPageContentStream stream;
+
+	private final Deque<GraphicsState> savedStates = new ArrayDeque<>();
+
+	private GraphicsState state = new GraphicsState();
+
+	public PageContentStreamOptimized(final PDPageContentStream stream) {
+		this.stream = stream;
+	}
+
+	/**
+	 * @return The wrapped {@link PDPageContentStream}
+	 */
+	public PDPageContentStream getStream() {
+		return stream;
+	}
+
+	public void beginText() throws IOException {
+		stream.beginText();
+	}
+
+	public void endText() throws IOException {
+		stream.endText();
+	}
+
+	public void setFont(final PDFont font, final float fontSize) throws IOException {
+		if (font != state.font || fontSize != state.fontSize) {
+			stream.setFont(font, fontSize);
+			state.font = font;
+			state.fontSize = fontSize;
+		}
+	}
+
+	public void showText(final String text) throws IOException {
+		final PDFont font = state.font;
+		if (font == null) {
+			stream.showText(text);
+			return;
+		}
+		// pdfbox records the glyphs to subset in the font, pages may be generated concurrently, fonts are
+		// always locked on themselves, see GlyphMetrics
+		synchronized (font) {
+			stream.showText(text);
+		}
+	}
+
+	public void setLeading(final double leading) throws IOException {
+		stream.setLeading(leading);
+	}
+
+	public void newLine() throws IOException {
+		stream.newLine();
+	}
+
+	public void newLineAtOffset(final float tx, final float ty) throws IOException {
+		stream.newLineAtOffset(tx, ty);
+	}
+
+	public void setTextMatrix(final Matrix matrix) throws IOException {
+		stream.setTextMatrix(matrix);
+	}
+
+	public void drawImage(final PDImageXObject image, final float x, final float y, final float width,
+			final float height) throws IOException {
+		// the image is drawn within its own save/restore pair, the tracked state stays valid
+		stream.drawImage(image, x, y, width, height);
+	}
+
+	public void drawForm(final PDFormXObject form) throws IOException {
+		// a form is painted within its own graphics state, the tracked state stays valid
+		stream.drawForm(form);
+	}
+
+	public void setStrokingColor(final Color color) throws IOException {
+		if (!color.equals(state.strokingColor)) {
+			stream.setStrokingColor(color);
+			state.strokingColor = color;
+		}
+	}
+
+	public void setNonStrokingColor(final Color color) throws IOException {
+		if (!color.equals(state.nonStrokingColor)) {
+			stream.setNonStrokingColor(color);
+			state.nonStrokingColor = color;
+		}
+	}
+
+	public void setLineWidth(final float lineWidth) throws IOException {
+		if (lineWidth != state.lineWidth) {
+			stream.setLineWidth(lineWidth);
+			state.lineWidth = lineWidth;
+		}
+	}
+
+	public void setLineCapStyle(final int lineCapStyle) throws IOException {
+		if (lineCapStyle != state.lineCapStyle) {
+			stream.setLineCapStyle(lineCapStyle);
+			state.lineCapStyle = lineCapStyle;
+		}
+	}
+
+	public void setLineDashPattern(final float[] pattern, final float phase) throws IOException {
+		if (!Arrays.equals(pattern, state.dashPattern) || phase != state.dashPhase) {
+			stream.setLineDashPattern(pattern, phase);
+			state.dashPattern = pattern.clone();
+			state.dashPhase = phase;
+		}
+	}
+
+	public void addRect(final float x, final float y, final float width, final float height) throws IOException {
+		stream.addRect(x, y, width, height);
+	}
+
+	public void moveTo(final float x, final float y) throws IOException {
+		stream.moveTo(x, y);
+	}
+
+	public void lineTo(final float x, final float y) throws IOException {
+		stream.lineTo(x, y);
+	}
+
+	public void stroke() throws IOException {
+		stream.stroke();
+	}
+
+	public void fill() throws IOException {
+		stream.fill();
+	}
+
+	public void closePath() throws IOException {
+		stream.closePath();
+	}
+
+	public void saveGraphicsState() throws IOException {
+		stream.saveGraphicsState();
+		savedStates.push(state.copy());
+	}
+
+	public void restoreGraphicsState() throws IOException {
+		stream.restoreGraphicsState();
+		state = savedStates.pop();
+	}
+
+	@Override
+	public void close() throws IOException {
+		stream.close();
+	}
+
+	private static final class GraphicsState {
+
+		// null and NaN stand for "unknown", so the next change is always written
+		private Color strokingColor;
+		private Color nonStrokingColor;
+		private float lineWidth = Float.NaN;
+		private int lineCapStyle = -1;
+		private float[] dashPattern;
+		private float dashPhase = Float.NaN;
+		private PDFont font;
+		private float fontSize = Float.NaN;
+
+		GraphicsState copy() {
+			final GraphicsState copy = new GraphicsState();
+			copy.strokingColor = strokingColor;
+			copy.nonStrokingColor = nonStrokingColor;
+			copy.lineWidth = lineWidth;
+			copy.lineCapStyle = lineCapStyle;
+			copy.dashPattern = dashPattern;
+			copy.dashPhase = dashPhase;
+			copy.font = font;
+			copy.fontSize = fontSize;
+			return copy;
+		}
+	}
+}
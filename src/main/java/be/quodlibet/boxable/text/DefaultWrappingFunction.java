@@ -0,0 +1,60 @@
+package be.quodlibet.boxable.text;
+
+/**
+ * <p>
+ * Default {@link WrappingFunction} which allows wrapping after whitespace and
+ * after the characters {@code - @ , . : ;}.
+ * </p>
+ * <p>
+ * It produces the same lines as splitting with the regular expression
+ * {@code (?<=\s|-|@|,|\.|:|;)}, but finds the wrap points with a lookup table
+ * of character classes instead.
+ * </p>
+ */
+public final class DefaultWrappingFunction implements WrappingFunction {
+
+	// characters after which a line may be wrapped, only ASCII characters qualify
+	private static final boolean[] BREAK_AFTER = new boolean[128];
+
+	static {
+		for (final char c : " \t\n\u000B\f\r-@,.:;".toCharArray()) {
+			BREAK_AFTER[c] = true;
+		}
+	}
+
+	@Override
+	public String[] getLines(String text) {
+		final int[] wrapPoints = getWrapPoints(text);
+		final String[] lines = new String[wrapPoints.length];
+		int start = 0;
+		for (int i = 0; i < wrapPoints.length; i++) {
+			lines[i] = text.substring(start, wrapPoints[i]);
+			start = wrapPoints[i];
+		}
+		return lines;
+	}
+
+	@Override
+	public int[] getWrapPoints(String text) {
+		final int length = text.length();
+		int count = 1;
+		for (int i = 0; i < length - 1; i++) {
+			if (isBreakAfter(text.charAt(i))) {
+				count++;
+			}
+		}
+		final int[] wrapPoints = new int[count];
+		int index = 0;
+		for (int i = 0; i < length - 1; i++) {
+			if (isBreakAfter(text.charAt(i))) {
+				wrapPoints[index++] = i + 1;
+			}
+		}
+		wrapPoints[index] = length;
+		return wrapPoints;
+	}
+
+	private static boolean isBreakAfter(final char c) {
+		return c < BREAK_AFTER.length && BREAK_AFTER[c];
+	}
+}
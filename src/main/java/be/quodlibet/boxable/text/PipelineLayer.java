@@ -3,10 +3,12 @@ package be.quodlibet.boxable.text;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import org.apache.pdfbox.pdmodel.font.PDFont;
 
+import be.quodlibet.boxable.utils.FontUtils;
+import be.quodlibet.boxable.utils.GlyphMetrics;
+
 /**
  * 
  * @author Markus Kühne
@@ -15,15 +17,25 @@ import org.apache.pdfbox.pdmodel.font.PDFont;
 
 public class PipelineLayer {
 
-	private final Pattern whitespace = Pattern.compile("(?:\r\n|\n\r|[ \t\n\r\\f])+\\z");
+	// measure-only layers keep track of widths, but neither build the text nor collect the tokens
+	private final boolean measureOnly;
 
 	private final StringBuilder text = new StringBuilder();
 
-	private String lastTextToken = "";
+	private int textLength;
+
+	// text tokens are spans over their source, so they are appended and measured without creating strings
+	private CharSequence lastTextSource = "";
+
+	private int lastTextStart;
+
+	private int lastTextEnd;
 
 	private List<Token> tokens = new ArrayList<>();
 
-	private String trimmedLastTextToken = "";
+	private int tokenCount;
+
+	private int trimmedLastTextTokenEnd;
 
 	private float width;
 
@@ -31,14 +43,36 @@ public class PipelineLayer {
 
 	private float widthTrimmedLastToken;
 
+	// width of text, accumulated token by token instead of measuring the whole line again
 	private float widthCurrentText;
 
+	public PipelineLayer() {
+		this(false);
+	}
+
+	/**
+	 * <p>
+	 * Constructs a pipeline layer. A measure-only layer computes the same
+	 * widths, but its {@link #trimmedText()} and {@link #tokens()} are not
+	 * available. Layers pushed into each other must use the same mode.
+	 * </p>
+	 *
+	 * @param measureOnly
+	 *            {@code true} if only widths are needed
+	 */
+	public PipelineLayer(final boolean measureOnly) {
+		this.measureOnly = measureOnly;
+	}
+
 	public boolean isEmpty() {
-		return tokens.isEmpty();
+		return tokenCount == 0;
 	}
 
 	public void push(final Token token) {
-		tokens.add(token);
+		if (!measureOnly) {
+			tokens.add(token);
+		}
+		tokenCount++;
 	}
 
 	public void push(final PDFont font, final float fontSize, final Token token) throws IOException {
@@ -47,57 +81,162 @@ public class PipelineLayer {
 		}
 		if (token.getType().equals(TokenType.BULLET)) {
 			// just appending one space because our bullet width will be wide as one character of current font
-			text.append(token.getData());
-			width += (font.getStringWidth(token.getData()) / 1000f * fontSize);
+			final float bulletWidth = FontUtils.getStringWidth(font, token.getData(), fontSize);
+			appendText(token.getData(), 0, token.getData().length());
+			width += bulletWidth;
+			widthCurrentText += bulletWidth;
 		}
 
 		if (token.getType().equals(TokenType.ORDERING)) {
 			// just appending one space because our bullet width will be wide as one character of current font
-			text.append(token.getData());
-			width += (font.getStringWidth(token.getData()) / 1000f * fontSize);
+			final float orderingWidth = FontUtils.getStringWidth(font, token.getData(), fontSize);
+			appendText(token.getData(), 0, token.getData().length());
+			width += orderingWidth;
+			widthCurrentText += orderingWidth;
 		}
 
 		if (token.getType().equals(TokenType.TEXT)) {
-			text.append(lastTextToken);
-			width += widthLastToken;
-			lastTextToken = token.getData();
-			trimmedLastTextToken = whitespace.matcher(lastTextToken).replaceAll("");
-			widthLastToken = (font.getStringWidth(lastTextToken) / 1000f * fontSize);
-			widthTrimmedLastToken = (font.getStringWidth(trimmedLastTextToken) / 1000f * fontSize);
-			widthCurrentText = (font.getStringWidth(text.toString()) / 1000f * fontSize);
+			pushText(font, fontSize, token.getSource(), token.getStart(), token.getEnd());
 		}
 
 		push(token);
 	}
 
+	/**
+	 * <p>
+	 * Pushes designated span as read from the {@link Tokenizer}. The
+	 * {@link Token} of a text span is only created if this layer collects
+	 * tokens, a measure-only layer just reads its offsets.
+	 * </p>
+	 *
+	 * @param font
+	 *            font of text spans
+	 * @param fontSize
+	 *            font size of text spans
+	 * @param spans
+	 *            tokenized text
+	 * @param index
+	 *            index of the span
+	 */
+	public void push(final PDFont font, final float fontSize, final TokenSpans spans, final int index) {
+		switch (spans.getType(index)) {
+		case TEXT:
+			final int start = spans.getStart(index);
+			final int end = spans.getEnd(index);
+			pushText(font, fontSize, spans.getText(), start, end);
+			if (measureOnly) {
+				tokenCount++;
+			} else {
+				push(new Token(TokenType.TEXT, spans.getText(), start, end));
+			}
+			break;
+		case POSSIBLE_WRAP_POINT:
+			push(Token.wrapPoint(spans.getStart(index)));
+			break;
+		default:
+			// tag tokens are shared
+			push(Tokenizer.getTagToken(spans.getTag(index)));
+			break;
+		}
+	}
+
+	private void pushText(final PDFont font, final float fontSize, final CharSequence source, final int start,
+			final int end) {
+		appendLastTextToken();
+		width += widthLastToken;
+		widthCurrentText += widthLastToken;
+		lastTextSource = source;
+		lastTextStart = start;
+		lastTextEnd = end;
+		final GlyphMetrics metrics = GlyphMetrics.of(font);
+		widthLastToken = metrics.getStringWidth(source, start, end) / 1000f * fontSize;
+		trimmedLastTextTokenEnd = trimmedEnd(source, start, end);
+		if (trimmedLastTextTokenEnd == end) {
+			widthTrimmedLastToken = widthLastToken;
+		} else {
+			widthTrimmedLastToken = metrics.getStringWidth(source, start, trimmedLastTextTokenEnd) / 1000f * fontSize;
+		}
+	}
+
 	public void push(final PipelineLayer pipeline) {
-		text.append(lastTextToken);
+		appendLastTextToken();
 		width += widthLastToken;
-		text.append(pipeline.text);
-		if (pipeline.text.length() > 0) {
+		widthCurrentText += widthLastToken;
+		if (!measureOnly) {
+			text.append(pipeline.text);
+		}
+		textLength += pipeline.textLength;
+		if (pipeline.textLength > 0) {
 			width += pipeline.widthCurrentText;
+			widthCurrentText += pipeline.widthCurrentText;
 		}
-		lastTextToken = pipeline.lastTextToken;
-		trimmedLastTextToken = pipeline.trimmedLastTextToken;
+		lastTextSource = pipeline.lastTextSource;
+		lastTextStart = pipeline.lastTextStart;
+		lastTextEnd = pipeline.lastTextEnd;
+		trimmedLastTextTokenEnd = pipeline.trimmedLastTextTokenEnd;
 		widthLastToken = pipeline.widthLastToken;
 		widthTrimmedLastToken = pipeline.widthTrimmedLastToken;
 		tokens.addAll(pipeline.tokens);
+		tokenCount += pipeline.tokenCount;
 
 		pipeline.reset();
 	}
 
 	public void reset() {
 		text.delete(0, text.length());
+		textLength = 0;
 		width = 0.0f;
-		lastTextToken = "";
-		trimmedLastTextToken = "";
+		lastTextSource = "";
+		lastTextStart = 0;
+		lastTextEnd = 0;
+		trimmedLastTextTokenEnd = 0;
 		widthLastToken = 0.0f;
 		widthTrimmedLastToken = 0.0f;
+		widthCurrentText = 0.0f;
 		tokens.clear();
+		tokenCount = 0;
+	}
+
+	private void appendLastTextToken() {
+		appendText(lastTextSource, lastTextStart, lastTextEnd);
+	}
+
+	private void appendText(final CharSequence source, final int start, final int end) {
+		if (!measureOnly) {
+			text.append(source, start, end);
+		}
+		textLength += end - start;
+	}
+
+	/**
+	 * <p>
+	 * End of the text span without trailing whitespace (space, tab, line feed,
+	 * carriage return and form feed).
+	 * </p>
+	 *
+	 * @param source
+	 *            The source text of the span
+	 * @param start
+	 *            start of the span (inclusive)
+	 * @param end
+	 *            end of the span (exclusive)
+	 * @return end of the span without trailing whitespace
+	 */
+	private static int trimmedEnd(final CharSequence source, final int start, int end) {
+		while (end > start) {
+			final char c = source.charAt(end - 1);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r' && c != '\f') {
+				break;
+			}
+			end--;
+		}
+		return end;
 	}
 
 	public String trimmedText() {
-		return text.toString() + trimmedLastTextToken;
+		checkNotMeasureOnly();
+		return new StringBuilder(text.length() + trimmedLastTextTokenEnd - lastTextStart).append(text)
+				.append(lastTextSource, lastTextStart, trimmedLastTextTokenEnd).toString();
 	}
 
 	public float width() {
@@ -109,11 +248,18 @@ public class PipelineLayer {
 	}
 
 	public List<Token> tokens() {
+		checkNotMeasureOnly();
 		return new ArrayList<>(tokens);
 	}
 
+	private void checkNotMeasureOnly() {
+		if (measureOnly) {
+			throw new IllegalStateException("Text and tokens aren't collected by a measure-only layer");
+		}
+	}
+
 	@Override
 	public String toString() {
-		return text.toString() + "(" + lastTextToken + ") [width: " + width() + ", trimmed: " + trimmedWidth() + "]";
+		return text.toString() + "(" + lastTextSource.subSequence(lastTextStart, lastTextEnd) + ") [width: " + width() + ", trimmed: " + trimmedWidth() + "]";
 	}
 }
@@ -3,24 +3,66 @@ package be.quodlibet.boxable.text;
 public class Token {
 
 	private final TokenType type;
-	
-	private final String data;
+
+	// tokens produced by the Tokenizer are spans over the source text, their data is only created on demand
+	private final CharSequence source;
+
+	private final int start;
+
+	private final int end;
+
+	private String data;
 
 	public Token(TokenType type, String data) {
 		this.type = type;
 		this.data = data;
+		this.source = data;
+		this.start = 0;
+		this.end = data == null ? 0 : data.length();
+	}
+
+	Token(TokenType type, CharSequence source, int start, int end) {
+		this.type = type;
+		this.source = source;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * <p>
+	 * Creates a {@link TokenType#POSSIBLE_WRAP_POINT} token whose data is the
+	 * designated offset in the source text.
+	 * </p>
+	 */
+	static Token wrapPoint(int offset) {
+		return new Token(TokenType.POSSIBLE_WRAP_POINT, null, offset, offset);
 	}
-	
+
 	public String getData() {
+		if (data == null && (source != null || type == TokenType.POSSIBLE_WRAP_POINT)) {
+			data = source == null ? String.valueOf(start) : source.subSequence(start, end).toString();
+		}
 		return data;
 	}
-	
+
 	public TokenType getType() {
 		return type;
 	}
-	
+
+	CharSequence getSource() {
+		return source;
+	}
+
+	int getStart() {
+		return start;
+	}
+
+	int getEnd() {
+		return end;
+	}
+
 	@Override
 	public String toString() {
-		return getClass().getSimpleName() + "[" + type + "/" + data + "]";
+		return getClass().getSimpleName() + "[" + type + "/" + getData() + "]";
 	}
 }
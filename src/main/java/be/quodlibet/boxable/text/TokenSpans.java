@@ -0,0 +1,113 @@
+package be.quodlibet.boxable.text;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Reusable buffer of token spans produced by
+ * {@link Tokenizer#tokenize(String, WrappingFunction, TokenSpans)}. Each span
+ * is stored as type, start offset, length and tag id in a primitive array over
+ * the source text, so tokenizing doesn't create a {@link String} per token.
+ * </p>
+ * <p>
+ * {@link Token} objects are only created on request through
+ * {@link #getToken(int)}; their data still refers to the source text.
+ * </p>
+ */
+public final class TokenSpans {
+
+	private static final int STRIDE = 4;
+
+	private static final TokenType[] TYPES = TokenType.values();
+
+	private String text;
+
+	private int[] spans = new int[32 * STRIDE];
+
+	private int size;
+
+	/**
+	 * <p>
+	 * Clears this buffer so it can be reused for designated text.
+	 * </p>
+	 *
+	 * @param text
+	 *            The source text of the next spans
+	 */
+	void reset(final String text) {
+		this.text = text;
+		this.size = 0;
+	}
+
+	void add(final TokenType type, final int start, final int end, final int tag) {
+		final int offset = size * STRIDE;
+		if (offset == spans.length) {
+			spans = Arrays.copyOf(spans, spans.length * 2);
+		}
+		spans[offset] = type.ordinal();
+		spans[offset + 1] = start;
+		spans[offset + 2] = end - start;
+		spans[offset + 3] = tag;
+		size++;
+	}
+
+	/**
+	 * @return The source text of the spans
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return number of spans
+	 */
+	public int size() {
+		return size;
+	}
+
+	public TokenType getType(final int index) {
+		return TYPES[spans[index * STRIDE]];
+	}
+
+	public int getStart(final int index) {
+		return spans[index * STRIDE + 1];
+	}
+
+	public int getLength(final int index) {
+		return spans[index * STRIDE + 2];
+	}
+
+	public int getEnd(final int index) {
+		return getStart(index) + getLength(index);
+	}
+
+	/**
+	 * @param index
+	 *            index of the span
+	 * @return tag id of the span, see {@link Tokenizer#getTagName(int)}
+	 */
+	public int getTag(final int index) {
+		return spans[index * STRIDE + 3];
+	}
+
+	/**
+	 * <p>
+	 * Creates the {@link Token} for designated span. Tag tokens are shared,
+	 * text tokens refer to the source text.
+	 * </p>
+	 *
+	 * @param index
+	 *            index of the span
+	 * @return {@link Token} of the span
+	 */
+	public Token getToken(final int index) {
+		switch (getType(index)) {
+		case TEXT:
+			return new Token(TokenType.TEXT, text, getStart(index), getEnd(index));
+		case POSSIBLE_WRAP_POINT:
+			return Token.wrapPoint(getStart(index));
+		default:
+			return Tokenizer.getTagToken(getTag(index));
+		}
+	}
+}
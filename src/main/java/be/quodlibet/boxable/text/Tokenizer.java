@@ -1,263 +1,144 @@
 package be.quodlibet.boxable.text;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Stack;
 
 public final class Tokenizer {
 
+	/**
+	 * <p>
+	 * Tag id of spans which are not tags
+	 * </p>
+	 */
+	public static final int NO_TAG = -1;
+
+	// supported markup, the index in this table is the tag id
+	private static final String[] TAG_MARKUP = { "<i>", "<b>", "<br>", "<br/>", "<br />", "<p>", "<ol>", "<ul>",
+			"<li>", "</i>", "</b>", "</p>", "</ol>", "</ul>", "</li>" };
+
+	private static final Token[] TAG_TOKENS = { new Token(TokenType.OPEN_TAG, "i"),
+			new Token(TokenType.OPEN_TAG, "b"), new Token(TokenType.WRAP_POINT, "br"),
+			new Token(TokenType.WRAP_POINT, "br"), new Token(TokenType.WRAP_POINT, "br"),
+			new Token(TokenType.WRAP_POINT, "p"), new Token(TokenType.OPEN_TAG, "ol"),
+			new Token(TokenType.OPEN_TAG, "ul"), new Token(TokenType.WRAP_POINT, "li"),
+			new Token(TokenType.CLOSE_TAG, "i"), new Token(TokenType.CLOSE_TAG, "b"),
+			new Token(TokenType.CLOSE_TAG, "p"), new Token(TokenType.CLOSE_TAG, "ol"),
+			new Token(TokenType.CLOSE_TAG, "ul"), new Token(TokenType.CLOSE_TAG, "li") };
+
+	// tag ids grouped by the character following '<'
+	private static final int[][] TAGS_BY_SECOND_CHAR = new int[128][];
+
+	static {
+		for (int id = 0; id < TAG_MARKUP.length; id++) {
+			final char c = TAG_MARKUP[id].charAt(1);
+			final int[] ids = TAGS_BY_SECOND_CHAR[c];
+			final int[] extended = ids == null ? new int[1] : Arrays.copyOf(ids, ids.length + 1);
+			extended[extended.length - 1] = id;
+			TAGS_BY_SECOND_CHAR[c] = extended;
+		}
+	}
+
 	private Tokenizer() {
 	}
 
 	public static List<Token> tokenize(final String text, final WrappingFunction wrappingFunction) {
-		final List<Token> tokens = new ArrayList<>();
-		if (text != null) {
-			final String[] split = wrappingFunction.getLines(text);
-			int textIndex = text.length();
-			final Stack<Integer> possibleWrapPoints = new Stack<>();
-			possibleWrapPoints.push(textIndex);
-			for (int i = split.length - 1; i > 0; i--) {
-				final int splitLength = split[i].length();
-				possibleWrapPoints.push(textIndex - splitLength);
-				textIndex -= splitLength;
+		if (text == null) {
+			return Collections.emptyList();
+		}
+		final TokenSpans spans = new TokenSpans();
+		tokenize(text, wrappingFunction, spans);
+		final List<Token> tokens = new ArrayList<>(spans.size());
+		for (int i = 0; i < spans.size(); i++) {
+			tokens.add(spans.getToken(i));
+		}
+		return tokens;
+	}
+
+	/**
+	 * <p>
+	 * Tokenizes designated text into a reusable {@link TokenSpans} buffer. The
+	 * buffer is cleared first.
+	 * </p>
+	 *
+	 * @param text
+	 *            The text which will be tokenized
+	 * @param wrappingFunction
+	 *            The {@link WrappingFunction} providing possible wrap points
+	 * @param spans
+	 *            The buffer receiving the spans
+	 */
+	public static void tokenize(final String text, final WrappingFunction wrappingFunction, final TokenSpans spans) {
+		spans.reset(text);
+		if (text == null) {
+			return;
+		}
+		final int length = text.length();
+		final int[] possibleWrapPoints = wrappingFunction.getWrapPoints(text);
+		int wrapPointIndex = 0;
+		// taking first wrap point
+		int currentWrapPoint = possibleWrapPoints[wrapPointIndex];
+		int textStart = 0;
+		int textIndex = 0;
+		while (textIndex < length) {
+			if (textIndex == currentWrapPoint) {
+				addText(spans, textStart, textIndex);
+				spans.add(TokenType.POSSIBLE_WRAP_POINT, textIndex, textIndex, NO_TAG);
+				textStart = textIndex;
+				wrapPointIndex++;
+				currentWrapPoint = wrapPointIndex < possibleWrapPoints.length ? possibleWrapPoints[wrapPointIndex] : -1;
 			}
-			textIndex = 0;
-			final StringBuilder sb = new StringBuilder();
-			// taking first wrap point
-			Integer currentWrapPoint = possibleWrapPoints.pop();
-			while (textIndex < text.length()) {
-				if (textIndex == currentWrapPoint) {
-					if (sb.length() > 0) {
-						tokens.add(new Token(TokenType.TEXT, sb.toString()));
-						sb.delete(0, sb.length());
-					}
-					tokens.add(new Token(TokenType.POSSIBLE_WRAP_POINT, "" + textIndex));
-					currentWrapPoint = possibleWrapPoints.pop();
+			if (text.charAt(textIndex) == '<') {
+				final int tag = matchTag(text, textIndex);
+				if (tag != NO_TAG) {
+					addText(spans, textStart, textIndex);
+					final int tagEnd = textIndex + TAG_MARKUP[tag].length();
+					spans.add(TAG_TOKENS[tag].getType(), textIndex, tagEnd, tag);
+					textIndex = tagEnd;
+					textStart = textIndex;
+					continue;
 				}
-				final char c = text.charAt(textIndex);
-				switch (c) {
-				case '<':
-					boolean consumed = false;
-					if (textIndex < text.length() - 2) {
-						final char lookahead1 = text.charAt(textIndex + 1);
-						final char lookahead2 = text.charAt(textIndex + 2);
-						if ('i' == lookahead1 && '>' == lookahead2) {
-							// <i>
-							if (sb.length() > 0) {
-								tokens.add(new Token(TokenType.TEXT, sb.toString()));
-								// clean string builder
-								sb.delete(0, sb.length());
-							}
-							tokens.add(new Token(TokenType.OPEN_TAG, "i"));
-							textIndex += 2;
-							consumed = true;
-						} else if ('b' == lookahead1 && '>' == lookahead2) {
-							// <b>
-							if (sb.length() > 0) {
-								tokens.add(new Token(TokenType.TEXT, sb.toString()));
-								// clean string builder
-								sb.delete(0, sb.length());
-							}
-							tokens.add(new Token(TokenType.OPEN_TAG, "b"));
-							textIndex += 2;
-							consumed = true;
-						} else if ('b' == lookahead1 && 'r' == lookahead2) {
-							if (textIndex < text.length() - 3) {
-								// <br>
-								final char lookahead3 = text.charAt(textIndex + 3);
-								if (lookahead3 == '>') {
-									if (sb.length() > 0) {
-										tokens.add(new Token(TokenType.TEXT, sb.toString()));
-										// clean string builder
-										sb.delete(0, sb.length());
-									}
-									tokens.add(new Token(TokenType.WRAP_POINT, "br"));
-									// normal notation <br>
-									textIndex += 3;
-									consumed = true;
-								} else if (textIndex < text.length() - 4) {
-									// <br/>
-									final char lookahead4 = text.charAt(textIndex + 4);
-									if (lookahead3 == '/' && lookahead4 == '>') {
-										if (sb.length() > 0) {
-											tokens.add(new Token(TokenType.TEXT, sb.toString()));
-											// clean string builder
-											sb.delete(0, sb.length());
-										}
-										tokens.add(new Token(TokenType.WRAP_POINT, "br"));
-										// normal notation <br/>
-										textIndex += 4;
-										consumed = true;
-									} else if (textIndex < text.length() - 5) {
-										final char lookahead5 = text.charAt(textIndex + 5);
-										if (lookahead3 == ' ' && lookahead4 == '/' && lookahead5 == '>') {
-											if (sb.length() > 0) {
-												tokens.add(new Token(TokenType.TEXT, sb.toString()));
-												// clean string builder
-												sb.delete(0, sb.length());
-											}
-											tokens.add(new Token(TokenType.WRAP_POINT, "br"));
-											// in case it is notation <br />
-											textIndex += 5;
-											consumed = true;
-										}
-									}
-								}
-							}
-						} else if ('p' == lookahead1 && '>' == lookahead2) {
-							// <p>
-							if (sb.length() > 0) {
-								tokens.add(new Token(TokenType.TEXT, sb.toString()));
-								// clean string builder
-								sb.delete(0, sb.length());
-							}
-							tokens.add(new Token(TokenType.WRAP_POINT, "p"));
-							textIndex += 2;
-							consumed = true;
-						} else if ('o' == lookahead1 && 'l' == lookahead2) {
-							// <ol>
-							if (textIndex < text.length() - 3) {
-								final char lookahead3 = text.charAt(textIndex + 3);
-								if (lookahead3 == '>') {
-									if (sb.length() > 0) {
-										tokens.add(new Token(TokenType.TEXT, sb.toString()));
-										// clean string builder
-										sb.delete(0, sb.length());
-									}
-									tokens.add(new Token(TokenType.OPEN_TAG, "ol"));
-									textIndex += 3;
-									consumed = true;
-								}
-							}
-						} else if ('u' == lookahead1 && 'l' == lookahead2) {
-							// <ul>
-							if (textIndex < text.length() - 3) {
-								final char lookahead3 = text.charAt(textIndex + 3);
-								if (lookahead3 == '>') {
-									if (sb.length() > 0) {
-										tokens.add(new Token(TokenType.TEXT, sb.toString()));
-										// clean string builder
-										sb.delete(0, sb.length());
-									}
-									tokens.add(new Token(TokenType.OPEN_TAG, "ul"));
-									textIndex += 3;
-									consumed = true;
-								}
-							}
-						} else if ('l' == lookahead1 && 'i' == lookahead2) {
-							// <li>
-							if (textIndex < text.length() - 3) {
-								final char lookahead3 = text.charAt(textIndex + 3);
-								if (lookahead3 == '>') {
-									if (sb.length() > 0) {
-										tokens.add(new Token(TokenType.TEXT, sb.toString()));
-										// clean string builder
-										sb.delete(0, sb.length());
-									}
-									tokens.add(new Token(TokenType.WRAP_POINT, "li"));
-									textIndex += 3;
-									consumed = true;
-								}
-							}
-						} else if ('/' == lookahead1) {
-							// one character tags
-							if (textIndex < text.length() - 3) {
-								final char lookahead3 = text.charAt(textIndex + 3);
-								if ('>' == lookahead3) {
-									if ('i' == lookahead2) {
-										// </i>
-										if (sb.length() > 0) {
-											tokens.add(new Token(TokenType.TEXT, sb.toString()));
-											sb.delete(0, sb.length());
-										}
-										tokens.add(new Token(TokenType.CLOSE_TAG, "i"));
-										textIndex += 3;
-										consumed = true;
-									} else if ('b' == lookahead2) {
-										// </b>
-										if (sb.length() > 0) {
-											tokens.add(new Token(TokenType.TEXT, sb.toString()));
-											sb.delete(0, sb.length());
-										}
-										tokens.add(new Token(TokenType.CLOSE_TAG, "b"));
-										textIndex += 3;
-										consumed = true;
-									} else if ('p' == lookahead2) {
-										//</p>
-										if (sb.length() > 0) {
-											tokens.add(new Token(TokenType.TEXT, sb.toString()));
-											sb.delete(0, sb.length());
-										}
-										tokens.add(new Token(TokenType.CLOSE_TAG, "p"));
-										textIndex += 3;
-										consumed = true;
-									}
-								}
-							}
-							if (textIndex < text.length() - 4) {
-								// lists
-								final char lookahead3 = text.charAt(textIndex + 3);
-								final char lookahead4 = text.charAt(textIndex + 4);
-								if ('l' == lookahead3) {
-									if ('o' == lookahead2 && '>' == lookahead4) {
-										// </ol>
-										if (sb.length() > 0) {
-											tokens.add(new Token(TokenType.TEXT, sb.toString()));
-											sb.delete(0, sb.length());
-										}
-										tokens.add(new Token(TokenType.CLOSE_TAG, "ol"));
-										textIndex += 4;
-										consumed = true;
-									} else if ('u' == lookahead2 && '>' == lookahead4) {
-										// </ul>
-										if (sb.length() > 0) {
-											tokens.add(new Token(TokenType.TEXT, sb.toString()));
-											sb.delete(0, sb.length());
-										}
-										tokens.add(new Token(TokenType.CLOSE_TAG, "ul"));
-										textIndex += 4;
-										consumed = true;
-									}
-								} else if ('l' == lookahead2 && 'i' == lookahead3) {
-									// </li>
-									if ('>' == lookahead4) {
-										if (sb.length() > 0) {
-											tokens.add(new Token(TokenType.TEXT, sb.toString()));
-											sb.delete(0, sb.length());
-										}
-										tokens.add(new Token(TokenType.CLOSE_TAG, "li"));
-										textIndex += 4;
-										consumed = true;
-									}
-								}
-							}
-						}
-						
-					}
-					if (!consumed) {
-						sb.append('<');
-					}
-					break;
-				default:
-					sb.append(c);
-					break;
-				}
-				textIndex++;
 			}
+			textIndex++;
+		}
+		addText(spans, textStart, length);
+		spans.add(TokenType.POSSIBLE_WRAP_POINT, length, length, NO_TAG);
+	}
 
-			if (sb.length() > 0) {
-				tokens.add(new Token(TokenType.TEXT, sb.toString()));
-				sb.delete(0, sb.length());
-			}
-			tokens.add(new Token(TokenType.POSSIBLE_WRAP_POINT, "" + textIndex));
+	/**
+	 * @param tag
+	 *            tag id of a span
+	 * @return name of the tag (e.g. {@code "b"} for {@code <b>} and {@code </b>})
+	 */
+	public static String getTagName(final int tag) {
+		return TAG_TOKENS[tag].getData();
+	}
 
-			return tokens;
-		} else
+	static Token getTagToken(final int tag) {
+		return TAG_TOKENS[tag];
+	}
 
-		{
-			return Collections.emptyList();
+	private static void addText(final TokenSpans spans, final int start, final int end) {
+		if (end > start) {
+			spans.add(TokenType.TEXT, start, end, NO_TAG);
+		}
+	}
+
+	private static int matchTag(final String text, final int index) {
+		if (index + 1 >= text.length()) {
+			return NO_TAG;
+		}
+		final char c = text.charAt(index + 1);
+		final int[] candidates = c < TAGS_BY_SECOND_CHAR.length ? TAGS_BY_SECOND_CHAR[c] : null;
+		if (candidates != null) {
+			for (final int tag : candidates) {
+				if (text.startsWith(TAG_MARKUP[tag], index)) {
+					return tag;
+				}
+			}
 		}
+		return NO_TAG;
 	}
 
 }
@@ -3,4 +3,31 @@ package be.quodlibet.boxable.text;
 public interface WrappingFunction {
 
 	String[] getLines(String text);
+
+	/**
+	 * <p>
+	 * Retrieves the offsets where designated text may be wrapped, in ascending
+	 * order. The last offset is always the length of the text.
+	 * </p>
+	 * <p>
+	 * By default the offsets are derived from {@link #getLines(String)};
+	 * implementations which know their break points should override this to
+	 * avoid splitting the text.
+	 * </p>
+	 *
+	 * @param text
+	 *            The text which may be wrapped
+	 * @return possible wrap offsets
+	 */
+	default int[] getWrapPoints(String text) {
+		final String[] split = getLines(text);
+		final int[] wrapPoints = new int[Math.max(split.length, 1)];
+		int textIndex = text.length();
+		wrapPoints[wrapPoints.length - 1] = textIndex;
+		for (int i = split.length - 1; i > 0; i--) {
+			textIndex -= split[i].length();
+			wrapPoints[i - 1] = textIndex;
+		}
+		return wrapPoints;
+	}
 }
@@ -0,0 +1,83 @@
+package be.quodlibet.boxable.utils;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * How a TrueType font loaded by {@link FontUtils#loadFont(org.apache.pdfbox.pdmodel.PDDocument, String, FontEmbedding)}
+ * is embedded in a document:
+ * </p>
+ * <ul>
+ * <li>{@link #SUBSET}: only the glyphs used by the document are embedded.
+ * Smallest files, but the font is subset whenever a document is saved, which
+ * is slow for fonts with many glyphs.</li>
+ * <li>{@link #FULL}: the whole font file is embedded. Saving is fast, files
+ * are as large as the font.</li>
+ * <li>{@link #presubset(CharSequence)}: the font is subset once to a known
+ * character repertoire and this subset is embedded whole in every document.
+ * Saving is fast and files stay small, but characters outside of the
+ * repertoire can't be measured or drawn.</li>
+ * </ul>
+ */
+public final class FontEmbedding {
+
+	/**
+	 * Subset the font when the document is saved, the default.
+	 */
+	public static final FontEmbedding SUBSET = new FontEmbedding(true, null);
+
+	/**
+	 * Embed the whole font file.
+	 */
+	public static final FontEmbedding FULL = new FontEmbedding(false, null);
+
+	private final boolean subsetOnSave;
+
+	// sorted, distinct code points of a pre-subset font, null for the font itself
+	private final int[] repertoire;
+
+	private FontEmbedding(final boolean subsetOnSave, final int[] repertoire) {
+		this.subsetOnSave = subsetOnSave;
+		this.repertoire = repertoire;
+	}
+
+	/**
+	 * <p>
+	 * Embeds a subset of the font, built once, which holds the glyphs of
+	 * designated characters.
+	 * </p>
+	 *
+	 * @param repertoire
+	 *            all characters the documents may contain
+	 * @return embedding of the pre-built subset
+	 */
+	public static FontEmbedding presubset(final CharSequence repertoire) {
+		final int[] codePoints = repertoire.codePoints().sorted().distinct().toArray();
+		return new FontEmbedding(false, codePoints);
+	}
+
+	boolean isSubsetOnSave() {
+		return subsetOnSave;
+	}
+
+	int[] getRepertoire() {
+		return repertoire;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(repertoire) * 31 + (subsetOnSave ? 1 : 0);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof FontEmbedding)) {
+			return false;
+		}
+		final FontEmbedding other = (FontEmbedding) obj;
+		return subsetOnSave == other.subsetOnSave && Arrays.equals(repertoire, other.repertoire);
+	}
+}
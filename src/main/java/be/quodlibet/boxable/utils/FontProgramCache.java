@@ -0,0 +1,271 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TTFSubsetter;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.MapMaker;
+
+/**
+ * <p>
+ * Process-wide cache of parsed TrueType font programs, keyed by their
+ * classpath resource path. A font file is read and parsed once; loading it
+ * into another {@link PDDocument} only creates the document's
+ * {@link PDType0Font} with its own subsetting state, which is cheap.
+ * </p>
+ * <p>
+ * The subsets of {@link FontEmbedding#presubset(CharSequence)} are cached as
+ * well, per font and repertoire, so they are built once for all documents.
+ * </p>
+ * <p>
+ * The {@link GlyphMetrics} of a font program are computed once as well and
+ * shared by the fonts of all documents. The cache is safe for concurrent use.
+ * Cached programs stay in memory until {@link #clear()} is called.
+ * </p>
+ *
+ * @see FontUtils#loadFont(PDDocument, String, FontEmbedding)
+ */
+public final class FontProgramCache {
+
+	private static final LoadingCache<Key, FontProgram> PROGRAMS = CacheBuilder.newBuilder()
+			.removalListener(new RemovalListener<Key, FontProgram>() {
+				@Override
+				public void onRemoval(final RemovalNotification<Key, FontProgram> notification) {
+					notification.getValue().close();
+				}
+			}).build(new CacheLoader<Key, FontProgram>() {
+				@Override
+				public FontProgram load(final Key key) throws IOException {
+					if (key.repertoire == null) {
+						return new FontProgram(parse(key.fontPath));
+					}
+					return new FontProgram(subset(get(new Key(key.fontPath, null)).ttf, key.repertoire));
+				}
+			});
+
+	/**
+	 * <p>
+	 * Where the loaded fonts come from, so they can be loaded into another
+	 * document. Keys are weak, the origins don't reference their font.
+	 * </p>
+	 */
+	private static final ConcurrentMap<PDFont, Origin> ORIGINS = new MapMaker().weakKeys().makeMap();
+
+	private FontProgramCache() {
+	}
+
+	/**
+	 * <p>
+	 * Loads the cached font program of designated classpath resource into
+	 * designated {@link PDDocument}. The font is subset when the document is
+	 * saved.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} where the font will be loaded
+	 * @param fontPath
+	 *            classpath resource path of the TrueType font
+	 * @return The {@link PDType0Font} for designated document
+	 * @throws IOException
+	 *             If the font can't be read or parsed
+	 */
+	public static PDType0Font load(final PDDocument document, final String fontPath) throws IOException {
+		return load(document, fontPath, FontEmbedding.SUBSET);
+	}
+
+	/**
+	 * <p>
+	 * Loads the cached font program of designated classpath resource into
+	 * designated {@link PDDocument}, embedded as designated.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} where the font will be loaded
+	 * @param fontPath
+	 *            classpath resource path of the TrueType font
+	 * @param embedding
+	 *            how the font is embedded in the document
+	 * @return The {@link PDType0Font} for designated document
+	 * @throws IOException
+	 *             If the font can't be read, parsed or subset
+	 */
+	public static PDType0Font load(final PDDocument document, final String fontPath, final FontEmbedding embedding)
+			throws IOException {
+		final FontProgram program = get(new Key(fontPath, embedding.getRepertoire()));
+		final PDType0Font font = PDType0Font.load(document, program.ttf, embedding.isSubsetOnSave());
+		GlyphMetrics.share(font, program.metrics);
+		ORIGINS.put(font, new Origin(document, fontPath, embedding));
+		return font;
+	}
+
+	/**
+	 * <p>
+	 * Retrieves designated font for use in designated {@link PDDocument}. A
+	 * font loaded by this cache into another document is loaded again, with
+	 * the same embedding, since a {@link PDType0Font} belongs to its document.
+	 * The Standard 14 font constants of {@link org.apache.pdfbox.pdmodel.font.PDType1Font}
+	 * belong to no document and are returned as they are.
+	 * </p>
+	 *
+	 * @param document
+	 *            {@link PDDocument} where the font will be used
+	 * @param font
+	 *            the font to use, may be {@code null}
+	 * @return designated font or the same font loaded into designated document
+	 * @throws IOException
+	 *             If the font can't be loaded
+	 * @throws IllegalArgumentException
+	 *             If the font belongs to another document and wasn't loaded by
+	 *             this cache
+	 */
+	public static PDFont rebind(final PDDocument document, final PDFont font) throws IOException {
+		if (font == null || isStandard14(font)) {
+			return font;
+		}
+		final Origin origin = ORIGINS.get(font);
+		if (origin == null) {
+			throw new IllegalArgumentException("Font " + font.getName()
+					+ " can't be used in another document, use a Standard 14 font or FontUtils.loadFont");
+		}
+		if (origin.document.get() == document) {
+			return font;
+		}
+		return load(document, origin.fontPath, origin.embedding);
+	}
+
+	private static boolean isStandard14(final PDFont font) {
+		for (final PDFont standard14 : Standard14Metrics.FONTS) {
+			if (font == standard14) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * Discards all cached font programs. Fonts already loaded into a document
+	 * keep working, fonts which are loaded later are parsed again.
+	 * </p>
+	 */
+	public static void clear() {
+		PROGRAMS.invalidateAll();
+	}
+
+	private static FontProgram get(final Key key) throws IOException {
+		try {
+			return PROGRAMS.get(key);
+		} catch (final ExecutionException e) {
+			Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static TrueTypeFont parse(final String fontPath) throws IOException {
+		try (InputStream input = FontProgramCache.class.getClassLoader().getResourceAsStream(fontPath)) {
+			if (input == null) {
+				throw new IOException("Font not found: " + fontPath);
+			}
+			return new TTFParser().parse(input);
+		}
+	}
+
+	private static TrueTypeFont subset(final TrueTypeFont ttf, final int[] repertoire) throws IOException {
+		final Set<Integer> codePoints = new HashSet<>();
+		for (final int codePoint : repertoire) {
+			codePoints.add(codePoint);
+		}
+		final TTFSubsetter subsetter = new TTFSubsetter(ttf);
+		subsetter.addAll(codePoints);
+		final ByteArrayOutputStream subset = new ByteArrayOutputStream();
+		subsetter.writeToStream(subset);
+		// the subset lacks some of the tables a standalone font file must have
+		return new TTFParser(true).parse(new ByteArrayInputStream(subset.toByteArray()));
+	}
+
+	private static final class Origin {
+
+		private final WeakReference<PDDocument> document;
+
+		private final String fontPath;
+
+		private final FontEmbedding embedding;
+
+		Origin(final PDDocument document, final String fontPath, final FontEmbedding embedding) {
+			this.document = new WeakReference<>(document);
+			this.fontPath = fontPath;
+			this.embedding = embedding;
+		}
+	}
+
+	private static final class Key {
+
+		private final String fontPath;
+
+		private final int[] repertoire;
+
+		Key(final String fontPath, final int[] repertoire) {
+			this.fontPath = fontPath;
+			this.repertoire = repertoire;
+		}
+
+		@Override
+		public int hashCode() {
+			return fontPath.hashCode() * 31 + Arrays.hashCode(repertoire);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return fontPath.equals(other.fontPath) && Arrays.equals(repertoire, other.repertoire);
+		}
+	}
+
+	private static final class FontProgram {
+
+		private final TrueTypeFont ttf;
+
+		// the metrics need a PDFont, this one lives in a document which is never saved
+		private final PDDocument prototypeDocument;
+
+		private final GlyphMetrics metrics;
+
+		FontProgram(final TrueTypeFont ttf) throws IOException {
+			this.ttf = ttf;
+			this.prototypeDocument = new PDDocument();
+			this.metrics = GlyphMetrics.ofProgram(PDType0Font.load(prototypeDocument, ttf, true));
+		}
+
+		void close() {
+			try {
+				prototypeDocument.close();
+			} catch (final IOException e) {
+				// nothing was written to the document, there is nothing to lose
+			}
+		}
+	}
+}
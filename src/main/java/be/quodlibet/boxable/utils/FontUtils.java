@@ -1,14 +1,10 @@
 package be.quodlibet.boxable.utils;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * <p>
@@ -20,49 +16,49 @@ import org.slf4j.LoggerFactory;
  */
 public final class FontUtils {
 
-	private final static Logger LOGGER = LoggerFactory.getLogger(FontUtils.class);
-
-	private static final class FontMetrics {
-		private final float ascent;
-
-		private final float descent;
-
-		private final float height;
-
-		public FontMetrics(final float height, final float ascent, final float descent) {
-			this.height = height;
-			this.ascent = ascent;
-			this.descent = descent;
-		}
+	private FontUtils() {
 	}
 
 	/**
 	 * <p>
-	 * {@link HashMap} for caching {@link FontMetrics} for designated
-	 * {@link PDFont} because {@link FontUtils#getHeight(PDFont, float)} is
-	 * expensive to calculate and the results are only approximate.
+	 * Loads the {@link PDType0Font} to be embedded in the specified
+	 * {@link PDDocument}. The font file is parsed once per process, see
+	 * {@link FontProgramCache}.
+	 * </p>
+	 * 
+	 * @param document
+	 *            {@link PDDocument} where fonts will be loaded
+	 * @param fontPath
+	 *            font path which will be loaded
+	 * @return The read {@link PDType0Font}
+	 * @throws IOException
+	 *             If reading the font file fails
 	 */
-	private static final Map<String, FontMetrics> fontMetrics = new HashMap<>();
-
-	private FontUtils() {
+	public static final PDType0Font loadFont(PDDocument document, String fontPath) throws IOException {
+		return FontProgramCache.load(document, fontPath);
 	}
 
 	/**
 	 * <p>
 	 * Loads the {@link PDType0Font} to be embedded in the specified
-	 * {@link PDDocument}.
+	 * {@link PDDocument} as designated. {@link FontEmbedding#FULL} and
+	 * {@link FontEmbedding#presubset(CharSequence)} make saving faster at the
+	 * cost of a larger file.
 	 * </p>
 	 * 
 	 * @param document
 	 *            {@link PDDocument} where fonts will be loaded
 	 * @param fontPath
 	 *            font path which will be loaded
+	 * @param embedding
+	 *            how the font is embedded in the document
 	 * @return The read {@link PDType0Font}
 	 * @throws IOException
 	 *             If reading the font file fails
 	 */
-	public static final PDType0Font loadFont(PDDocument document, String fontPath) throws IOException {
-		return PDType0Font.load(document, FontUtils.class.getClassLoader().getResourceAsStream(fontPath));
+	public static final PDType0Font loadFont(PDDocument document, String fontPath, FontEmbedding embedding)
+			throws IOException {
+		return FontProgramCache.load(document, fontPath, embedding);
 	}
 
 	/**
@@ -80,12 +76,7 @@ public final class FontUtils {
 	 * @return text width
 	 */
 	public static float getStringWidth(final PDFont font, final String text, final float fontSize) {
-		try {
-			return font.getStringWidth(text) / 1000 * fontSize;
-		} catch (final IOException e) {
-			// turn into runtime exception
-			throw new IllegalStateException("Unable to determine text width", e);
-		}
+		return GlyphMetrics.of(font).getStringWidth(text) / 1000 * fontSize;
 	}
 
 	/**
@@ -100,17 +91,7 @@ public final class FontUtils {
 	 * @return Positive font ascent distance
 	 */
 	public static float getAscent(final PDFont font, final float fontSize) {
-		final String fontName = font.getName();
-		if (!fontMetrics.containsKey(fontName)) {
-			try {
-				createFontMetrics(font);
-			} catch (final IOException e) {
-				LOGGER.info("Getting font ascent distance ...");
-				return font.getFontDescriptor().getAscent() / 1000 * fontSize;
-			}
-		}
-
-		return fontMetrics.get(fontName).ascent * fontSize;
+		return GlyphMetrics.of(font).getAscent() * fontSize;
 	}
 
 	/**
@@ -125,17 +106,7 @@ public final class FontUtils {
 	 * @return Negative font descent distance
 	 */
 	public static float getDescent(final PDFont font, final float fontSize) {
-		final String fontName = font.getName();
-		if (!fontMetrics.containsKey(fontName)) {
-			try {
-				createFontMetrics(font);
-			} catch (final IOException e) {
-				LOGGER.info("Getting font descent distance ...");
-				return font.getFontDescriptor().getDescent() / 1000 * fontSize;
-			}
-		}
-
-		return fontMetrics.get(fontName).descent * fontSize;
+		return GlyphMetrics.of(font).getDescent() * fontSize;
 	}
 
 	/**
@@ -150,33 +121,6 @@ public final class FontUtils {
 	 * @return {@link PDFont}'s height
 	 */
 	public static float getHeight(final PDFont font, final float fontSize) {
-		final String fontName = font.getName();
-		if (!fontMetrics.containsKey(fontName)) {
-			try {
-				createFontMetrics(font);
-			} catch (final IOException e) {
-				LOGGER.info("Getting font height ...");
-				return font.getFontDescriptor().getFontBoundingBox().getHeight() / 1000 * fontSize * 0.865f;
-			}
-		}
-
-		return fontMetrics.get(fontName).height * fontSize;
-	}
-
-	/**
-	 * <p>
-	 * Create basic {@link FontMetrics} for current font.
-	 * <p>
-	 * 
-	 * @param font
-	 *            The font from which calculation will be applied
-	 * @throws IOException
-	 *             If reading the font file fails
-	 */
-	private static void createFontMetrics(final PDFont font) throws IOException {
-		final float base = font.getFontDescriptor().getXHeight() / 1000;
-		final float ascent = font.getFontDescriptor().getAscent() / 1000 - base;
-		final float descent = font.getFontDescriptor().getDescent() / 1000;
-		fontMetrics.put(font.getName(), new FontMetrics(base + ascent - descent, ascent, descent));
+		return GlyphMetrics.of(font).getHeight() * fontSize;
 	}
 }
@@ -0,0 +1,358 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * <p>
+ * Metrics of a {@link PDFont}: its ascent, descent, height, x-height and
+ * average width, computed once when the metrics are created, and its glyph
+ * advance table. Advances are stored in primitive {@code float[]} pages of
+ * 256 code points which are filled on first use, so measuring text is a plain
+ * loop over the characters without encoding the text or allocating anything.
+ * </p>
+ * <p>
+ * Widths are returned in 1/1000 units of text space, exactly as
+ * {@link PDFont#getStringWidth(String)} returns them, the vertical metrics
+ * per unit of font size. Instances are shared per font instance, two fonts
+ * with the same name (e.g. subsets of the same font) have their own metrics.
+ * They are safe for concurrent use, reading the vertical metrics takes no
+ * lock.
+ * </p>
+ * <p>
+ * {@link PDFont} caches widths and encodings in plain hash maps, so every
+ * access to a font synchronizes on the font itself, as drawing text does, see
+ * {@link be.quodlibet.boxable.page.PageContentStreamOptimized#showText(String)}.
+ * </p>
+ * <p>
+ * The Standard 14 fonts take their metrics and advances from tables which
+ * are precompiled while building, see {@link Standard14Metrics}.
+ * </p>
+ */
+public final class GlyphMetrics {
+
+	private static final int PAGE_BITS = 8;
+
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private static final int BMP_PAGES = (Character.MAX_VALUE + 1) >> PAGE_BITS;
+
+	/**
+	 * <p>
+	 * Metrics keyed by {@link PDFont} identity. Keys are weak so metrics of
+	 * fonts which belong to closed documents can be garbage collected, the
+	 * metrics must therefore never reference their key strongly.
+	 * </p>
+	 */
+	private static final ConcurrentMap<PDFont, GlyphMetrics> METRICS = new MapMaker().weakKeys().makeMap();
+
+	// the font is the registry key of these metrics, null for program metrics
+	private final WeakReference<PDFont> font;
+
+	// font of a cached font program, see FontProgramCache, it is no registry key
+	private final PDFont programFont;
+
+	private final float ascent;
+
+	private final float descent;
+
+	private final float height;
+
+	private final float xHeight;
+
+	private final float averageWidth;
+
+	// null unless the font is one of the Standard 14 font constants
+	private final Standard14Metrics precompiled;
+
+	// Basic Multilingual Plane, NaN marks a code point which can't be encoded
+	private final AtomicReferenceArray<float[]> pages = new AtomicReferenceArray<>(BMP_PAGES);
+
+	// supplementary code points are rare, so they don't deserve a table
+	private final ConcurrentMap<Integer, Float> supplementary = new ConcurrentHashMap<>();
+
+	private GlyphMetrics(final PDFont font, final boolean program) {
+		this.font = program ? null : new WeakReference<>(font);
+		this.programFont = program ? font : null;
+		this.precompiled = Standard14Metrics.get(font);
+		final PDFontDescriptor descriptor;
+		final float fontAverageWidth;
+		synchronized (font) {
+			descriptor = font.getFontDescriptor();
+			fontAverageWidth = precompiled == null ? font.getAverageFontWidth() : 0;
+		}
+		if (precompiled != null) {
+			this.xHeight = precompiled.xHeight / 1000;
+			this.ascent = precompiled.ascent / 1000 - xHeight;
+			this.descent = precompiled.descent / 1000;
+		} else if (descriptor != null) {
+			this.xHeight = descriptor.getXHeight() / 1000;
+			this.ascent = descriptor.getAscent() / 1000 - xHeight;
+			this.descent = descriptor.getDescent() / 1000;
+		} else {
+			// e.g. Type 3 fonts, they can still be measured horizontally
+			this.xHeight = 0;
+			this.ascent = 0;
+			this.descent = 0;
+		}
+		this.height = xHeight + ascent - descent;
+		this.averageWidth = precompiled == null ? fontAverageWidth : precompiled.averageWidth;
+	}
+
+	/**
+	 * <p>
+	 * Retrieves the shared {@link GlyphMetrics} for designated {@link PDFont}.
+	 * </p>
+	 *
+	 * @param font
+	 *            The font whose glyph advances will be retrieved
+	 * @return {@link GlyphMetrics} of the font
+	 */
+	public static GlyphMetrics of(final PDFont font) {
+		GlyphMetrics metrics = METRICS.get(font);
+		if (metrics == null) {
+			metrics = new GlyphMetrics(font, false);
+			final GlyphMetrics existing = METRICS.putIfAbsent(font, metrics);
+			if (existing != null) {
+				metrics = existing;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * <p>
+	 * Creates the metrics of a cached font program which will be shared with
+	 * its instances by {@link #share(PDFont, GlyphMetrics)}. They keep
+	 * designated font, so the instances can be measured as long as they live.
+	 * </p>
+	 */
+	static GlyphMetrics ofProgram(final PDFont font) {
+		return new GlyphMetrics(font, true);
+	}
+
+	/**
+	 * <p>
+	 * Shares designated metrics with another instance of the same font
+	 * program, e.g. the same font loaded into another document, so they are
+	 * not computed again.
+	 * </p>
+	 */
+	static void share(final PDFont font, final GlyphMetrics metrics) {
+		METRICS.putIfAbsent(font, metrics);
+	}
+
+	/**
+	 * @return The {@link PDFont} these metrics were created for, it may be
+	 *         another instance of the same font program, see
+	 *         {@link FontProgramCache}, or {@code null} if the font was
+	 *         garbage collected
+	 */
+	public PDFont getFont() {
+		return programFont != null ? programFont : font.get();
+	}
+
+	private PDFont font() {
+		final PDFont measured = getFont();
+		if (measured == null) {
+			throw new IllegalStateException("The font of these metrics was garbage collected");
+		}
+		return measured;
+	}
+
+	/**
+	 * @return Positive ascent above the x-height, per unit of font size
+	 */
+	public float getAscent() {
+		return ascent;
+	}
+
+	/**
+	 * @return Negative descent, per unit of font size
+	 */
+	public float getDescent() {
+		return descent;
+	}
+
+	/**
+	 * @return Height of a line of text, per unit of font size
+	 */
+	public float getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return Height of lowercase letters, per unit of font size
+	 */
+	public float getXHeight() {
+		return xHeight;
+	}
+
+	/**
+	 * @return Average glyph width in 1/1000 units of text space
+	 */
+	public float getAverageWidth() {
+		return averageWidth;
+	}
+
+	/**
+	 * <p>
+	 * Retrieves the advance of a single code point.
+	 * </p>
+	 *
+	 * @param codePoint
+	 *            The code point whose advance will be retrieved
+	 * @return advance in 1/1000 units of text space
+	 * @throws IllegalArgumentException
+	 *             if the code point is not available in the font's encoding
+	 */
+	public float getWidth(final int codePoint) {
+		final float width;
+		if (codePoint <= Character.MAX_VALUE) {
+			width = page(codePoint >> PAGE_BITS)[codePoint & PAGE_MASK];
+		} else {
+			width = supplementaryWidth(codePoint);
+		}
+		if (Float.isNaN(width)) {
+			return measure(codePoint);
+		}
+		return width;
+	}
+
+	/**
+	 * <p>
+	 * Retrieves the width of designated text.
+	 * </p>
+	 *
+	 * @param text
+	 *            The text whose width will be retrieved
+	 * @return width in 1/1000 units of text space
+	 */
+	public float getStringWidth(final CharSequence text) {
+		return getStringWidth(text, 0, text.length());
+	}
+
+	/**
+	 * <p>
+	 * Retrieves the width of a part of designated text.
+	 * </p>
+	 *
+	 * @param text
+	 *            The text whose width will be retrieved
+	 * @param start
+	 *            index of the first character (inclusive)
+	 * @param end
+	 *            index of the last character (exclusive)
+	 * @return width in 1/1000 units of text space
+	 */
+	public float getStringWidth(final CharSequence text, final int start, final int end) {
+		float width = 0;
+		float[] page = null;
+		int pageIndex = -1;
+		for (int i = start; i < end; i++) {
+			final char c = text.charAt(i);
+			float advance;
+			if (Character.isSurrogate(c)) {
+				final int codePoint = Character.codePointAt(text, i);
+				if (Character.isSupplementaryCodePoint(codePoint)) {
+					i++;
+				}
+				advance = getWidth(codePoint);
+			} else {
+				// BMP fast path, the page usually stays the same for the whole text
+				final int index = c >> PAGE_BITS;
+				if (index != pageIndex) {
+					page = page(index);
+					pageIndex = index;
+				}
+				advance = page[c & PAGE_MASK];
+				if (Float.isNaN(advance)) {
+					advance = measure(c);
+				}
+			}
+			width += advance;
+		}
+		return width;
+	}
+
+	private float[] page(final int index) {
+		final float[] page = pages.get(index);
+		if (page != null) {
+			return page;
+		}
+		synchronized (font()) {
+			if (pages.get(index) == null) {
+				// publish the page only once it is completely filled
+				pages.set(index, createPage(index));
+			}
+			return pages.get(index);
+		}
+	}
+
+	private float[] createPage(final int index) {
+		final float[] page = new float[PAGE_SIZE];
+		Arrays.fill(page, Float.NaN);
+		final int first = index << PAGE_BITS;
+		if (precompiled != null) {
+			precompiled.fill(page, first);
+			return page;
+		}
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			final char c = (char) (first + i);
+			if (!Character.isSurrogate(c)) {
+				page[i] = advance(c);
+			}
+		}
+		return page;
+	}
+
+	private float supplementaryWidth(final int codePoint) {
+		Float width = supplementary.get(codePoint);
+		if (width == null) {
+			synchronized (font()) {
+				width = advance(codePoint);
+				supplementary.put(codePoint, width);
+			}
+		}
+		return width;
+	}
+
+	// callers hold the font's lock
+	private float advance(final int codePoint) {
+		try {
+			return font().getStringWidth(new String(Character.toChars(codePoint)));
+		} catch (final IOException | IllegalArgumentException e) {
+			return Float.NaN;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Measures a code point which is not in the advance table. This will
+	 * usually fail the same way {@link PDFont#getStringWidth(String)} does for
+	 * glyphs which are not available in the font.
+	 * </p>
+	 */
+	private float measure(final int codePoint) {
+		try {
+			final PDFont measured = font();
+			synchronized (measured) {
+				return measured.getStringWidth(new String(Character.toChars(codePoint)));
+			}
+		} catch (final IOException e) {
+			// turn into runtime exception
+			throw new IllegalStateException("Unable to determine text width", e);
+		}
+	}
+}
@@ -7,10 +7,13 @@ import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 
 import be.quodlibet.boxable.line.LineStyle;
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
 
 /**
  * <p>
- * Utility methods for {@link PDPageContentStream}
+ * Utility methods for {@link PDPageContentStream}. Each method also takes a
+ * {@link PageContentStreamOptimized}, which skips operators that don't change
+ * the graphics state.
  * </p>
  * 
  * @author hstimac
@@ -19,6 +22,8 @@ import be.quodlibet.boxable.line.LineStyle;
  */
 public final class PDStreamUtils {
 
+	private static final float[] SOLID_DASH_PATTERN = {};
+
 	private PDStreamUtils() {
 	}
 
@@ -45,6 +50,33 @@ public final class PDStreamUtils {
 	 */
 	public static void write(final PDPageContentStream stream, final String text, final PDFont font,
 			final float fontSize, final float x, final float y, final Color color) {
+		write(new PageContentStreamOptimized(stream), text, font, fontSize, x, y, color);
+	}
+
+	/**
+	 * <p>
+	 * Writes text above Y coordinate like
+	 * {@link #write(PDPageContentStream, String, PDFont, float, float, float, Color)}.
+	 * </p>
+	 *
+	 * @param stream
+	 *            The {@link PageContentStreamOptimized} where writing will be
+	 *            applied.
+	 * @param text
+	 *            The text which will be displayed.
+	 * @param font
+	 *            The font of the text
+	 * @param fontSize
+	 *            The font size of the text
+	 * @param x
+	 *            Start X coordinate for text.
+	 * @param y
+	 *            Start Y coordinate for text.
+	 * @param color
+	 *            Color of the text
+	 */
+	public static void write(final PageContentStreamOptimized stream, final String text, final PDFont font,
+			final float fontSize, final float x, final float y, final Color color) {
 		try {
 			stream.beginText();
 			stream.setFont(font, fontSize);
@@ -78,6 +110,31 @@ public final class PDStreamUtils {
 	 */
 	public static void rect(final PDPageContentStream stream, final float x, final float y, final float width,
 			final float height, final Color color) {
+		rect(new PageContentStreamOptimized(stream), x, y, width, height, color);
+	}
+
+	/**
+	 * <p>
+	 * Draws a filled rectangle like
+	 * {@link #rect(PDPageContentStream, float, float, float, float, Color)}.
+	 * </p>
+	 *
+	 * @param stream
+	 *            The {@link PageContentStreamOptimized} where drawing will be
+	 *            applied.
+	 * @param x
+	 *            Start X coordinate for rectangle.
+	 * @param y
+	 *            Start Y coordinate for rectangle.
+	 * @param width
+	 *            Width of rectangle
+	 * @param height
+	 *            Height of rectangle
+	 * @param color
+	 *            Color of the text
+	 */
+	public static void rect(final PageContentStreamOptimized stream, final float x, final float y, final float width,
+			final float height, final Color color) {
 		try {
 			stream.setNonStrokingColor(color);
 			// negative height because we want to draw down (not up!)
@@ -111,6 +168,29 @@ public final class PDStreamUtils {
 	 */
 	public static void rectFontMetrics(final PDPageContentStream stream, final float x, final float y,
 			final PDFont font, final float fontSize) {
+		rectFontMetrics(new PageContentStreamOptimized(stream), x, y, font, fontSize);
+	}
+
+	/**
+	 * <p>
+	 * Draws font metrics like
+	 * {@link #rectFontMetrics(PDPageContentStream, float, float, PDFont, float)}.
+	 * </p>
+	 *
+	 * @param stream
+	 *            The {@link PageContentStreamOptimized} where drawing will be
+	 *            applied.
+	 * @param x
+	 *            Start X coordinate for rectangle.
+	 * @param y
+	 *            Start Y coordinate for rectangle.
+	 * @param font
+	 *            {@link PDFont} from which will be obtained font metrics
+	 * @param fontSize
+	 *            Font size
+	 */
+	public static void rectFontMetrics(final PageContentStreamOptimized stream, final float x, final float y,
+			final PDFont font, final float fontSize) {
 		// height
 		PDStreamUtils.rect(stream, x, y, 3, FontUtils.getHeight(font, fontSize), Color.BLUE);
 		// ascent
@@ -133,6 +213,25 @@ public final class PDStreamUtils {
 	 * @throws IOException If the content stream could not be written or the line color cannot be retrieved.
 	 */
 	public static void setLineStyles(final PDPageContentStream stream, final LineStyle line) throws IOException {
+		setLineStyles(new PageContentStreamOptimized(stream), line);
+	}
+
+	/**
+	 * <p>
+	 * Sets line styles like
+	 * {@link #setLineStyles(PDPageContentStream, LineStyle)}. Styles which are
+	 * already set on the stream are not written again.
+	 * </p>
+	 *
+	 * @param stream
+	 *            The {@link PageContentStreamOptimized} where drawing will be
+	 *            applied.
+	 * @param line
+	 *            The {@link LineStyle} that would be applied
+	 * @throws IOException If the content stream could not be written or the line color cannot be retrieved.
+	 */
+	public static void setLineStyles(final PageContentStreamOptimized stream, final LineStyle line)
+			throws IOException {
 		stream.setNonStrokingColor(line.getColor());
 		stream.setStrokingColor(line.getColor());
 		stream.setLineWidth(line.getWidth());
@@ -140,7 +239,7 @@ public final class PDStreamUtils {
 		if (line.getDashArray() != null) {
 			stream.setLineDashPattern(line.getDashArray(), line.getDashPhase());
 		} else {
-			stream.setLineDashPattern(new float[] {}, 0.0f);
+			stream.setLineDashPattern(SOLID_DASH_PATTERN, 0.0f);
 		}
 	}
 }
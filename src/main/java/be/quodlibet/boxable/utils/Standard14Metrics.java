@@ -0,0 +1,164 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Precompiled metrics of the Standard 14 fonts: the vertical metrics and the
+ * advance of every encodable code point as primitive arrays. They are read
+ * from {@value #RESOURCE}, a resource generated from the bundled PDFBox
+ * version, so {@link GlyphMetrics} can fill its advance table without
+ * encoding and measuring each character through the font's AFM. The build
+ * fails if the resource is missing.
+ * </p>
+ * <p>
+ * Only the {@link PDType1Font} constants use these metrics, fonts read from
+ * an existing document may carry their own encoding. Without a readable
+ * resource a warning is logged and the fonts are measured as any other font.
+ * </p>
+ */
+final class Standard14Metrics {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(Standard14Metrics.class);
+
+	static final String RESOURCE = "standard14.metrics";
+
+	private static final int VERSION = 1;
+
+	static final PDType1Font[] FONTS = { PDType1Font.TIMES_ROMAN, PDType1Font.TIMES_BOLD, PDType1Font.TIMES_ITALIC,
+			PDType1Font.TIMES_BOLD_ITALIC, PDType1Font.HELVETICA, PDType1Font.HELVETICA_BOLD,
+			PDType1Font.HELVETICA_OBLIQUE, PDType1Font.HELVETICA_BOLD_OBLIQUE, PDType1Font.COURIER,
+			PDType1Font.COURIER_BOLD, PDType1Font.COURIER_OBLIQUE, PDType1Font.COURIER_BOLD_OBLIQUE,
+			PDType1Font.SYMBOL, PDType1Font.ZAPF_DINGBATS };
+
+	final float ascent;
+
+	final float descent;
+
+	final float xHeight;
+
+	final float averageWidth;
+
+	// sorted code points and their advances in 1/1000 units of text space
+	private final char[] codePoints;
+
+	private final float[] widths;
+
+	Standard14Metrics(final float ascent, final float descent, final float xHeight, final float averageWidth,
+			final char[] codePoints, final float[] widths) {
+		this.ascent = ascent;
+		this.descent = descent;
+		this.xHeight = xHeight;
+		this.averageWidth = averageWidth;
+		this.codePoints = codePoints;
+		this.widths = widths;
+	}
+
+	/**
+	 * @return precompiled metrics of designated font, {@code null} if it is
+	 *         not one of the {@link PDType1Font} constants
+	 */
+	static Standard14Metrics get(final PDFont font) {
+		return Holder.METRICS.get(font);
+	}
+
+	/**
+	 * <p>
+	 * Copies the advances of the code points from {@code first} on into
+	 * designated advance table page, leaving the other entries untouched.
+	 * </p>
+	 */
+	void fill(final float[] page, final int first) {
+		int i = Arrays.binarySearch(codePoints, (char) first);
+		if (i < 0) {
+			i = -i - 1;
+		}
+		for (; i < codePoints.length && codePoints[i] < first + page.length; i++) {
+			page[codePoints[i] - first] = widths[i];
+		}
+	}
+
+	void write(final DataOutputStream out) throws IOException {
+		out.writeFloat(ascent);
+		out.writeFloat(descent);
+		out.writeFloat(xHeight);
+		out.writeFloat(averageWidth);
+		out.writeInt(codePoints.length);
+		for (final char codePoint : codePoints) {
+			out.writeChar(codePoint);
+		}
+		for (final float width : widths) {
+			out.writeFloat(width);
+		}
+	}
+
+	private static Standard14Metrics read(final DataInputStream in) throws IOException {
+		final float ascent = in.readFloat();
+		final float descent = in.readFloat();
+		final float xHeight = in.readFloat();
+		final float averageWidth = in.readFloat();
+		final int count = in.readInt();
+		final char[] codePoints = new char[count];
+		for (int i = 0; i < count; i++) {
+			codePoints[i] = in.readChar();
+		}
+		final float[] widths = new float[count];
+		for (int i = 0; i < count; i++) {
+			widths[i] = in.readFloat();
+		}
+		return new Standard14Metrics(ascent, descent, xHeight, averageWidth, codePoints, widths);
+	}
+
+	static void writeAll(final Standard14Metrics[] metrics, final DataOutputStream out) throws IOException {
+		out.writeInt(VERSION);
+		out.writeInt(metrics.length);
+		for (int i = 0; i < metrics.length; i++) {
+			out.writeUTF(FONTS[i].getName());
+			metrics[i].write(out);
+		}
+	}
+
+	private static Map<PDFont, Standard14Metrics> readAll() {
+		final Map<PDFont, Standard14Metrics> metrics = new IdentityHashMap<>();
+		try (InputStream resource = Standard14Metrics.class.getResourceAsStream(RESOURCE)) {
+			if (resource == null) {
+				LOGGER.warn("No precompiled Standard 14 font metrics, {} is missing", RESOURCE);
+				return metrics;
+			}
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(resource));
+			if (in.readInt() != VERSION || in.readInt() != FONTS.length) {
+				LOGGER.warn("Ignoring precompiled Standard 14 font metrics of another version");
+				return metrics;
+			}
+			for (final PDType1Font font : FONTS) {
+				if (!font.getName().equals(in.readUTF())) {
+					LOGGER.warn("Ignoring precompiled Standard 14 font metrics of other fonts");
+					return Collections.emptyMap();
+				}
+				metrics.put(font, read(in));
+			}
+		} catch (final IOException e) {
+			LOGGER.warn("Unable to read precompiled Standard 14 font metrics", e);
+			return Collections.emptyMap();
+		}
+		return metrics;
+	}
+
+	private static final class Holder {
+
+		static final Map<PDFont, Standard14Metrics> METRICS = readAll();
+	}
+}
@@ -0,0 +1,143 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
+
+/**
+ * <p>
+ * Writes text pieces to a {@link PageContentStreamOptimized} as few text operators as
+ * possible. Pieces which continue exactly where the previous piece ended and
+ * share its font are merged into a single {@code Tj}, all pieces share one
+ * text object until {@link #end()} and the position is moved relative to the
+ * previous line ({@code Td}, or {@code T*} for a plain line advance). The font
+ * is only set when it changes.
+ * </p>
+ * <p>
+ * Nothing but text may be drawn on the stream between the first piece and
+ * {@link #end()}; call {@link #end()} before drawing paths or images.
+ * </p>
+ */
+public final class TextRunWriter {
+
+	private final PageContentStreamOptimized stream;
+
+	private final StringBuilder run = new StringBuilder();
+
+	private boolean inText;
+
+	// font set in the current text object
+	private PDFont font;
+
+	private float fontSize;
+
+	// origin of the current line in the text object, if a line was started yet
+	private boolean lineStarted;
+
+	private float lineX;
+
+	private float lineY;
+
+	private float leading;
+
+	// where the pending run ends, i.e. where a following piece can be appended
+	private float nextX;
+
+	private float nextY;
+
+	public TextRunWriter(final PageContentStreamOptimized stream) {
+		this.stream = stream;
+	}
+
+	/**
+	 * <p>
+	 * Shows designated text with its baseline starting at designated position.
+	 * </p>
+	 *
+	 * @param text
+	 *            The text to show
+	 * @param font
+	 *            The font of the text
+	 * @param fontSize
+	 *            The font size of the text
+	 * @param x
+	 *            Start X coordinate of the text
+	 * @param y
+	 *            Y coordinate of the baseline
+	 * @return X coordinate where the text ends
+	 * @throws IOException
+	 *             If writing to the stream fails
+	 */
+	public float showText(final String text, final PDFont font, final float fontSize, final float x, final float y)
+			throws IOException {
+		final float width = FontUtils.getStringWidth(font, text, fontSize);
+		// after a run is shown the text position is where it ends, no need to move there
+		final boolean continuesRun = run.length() > 0 && x == nextX && y == nextY;
+		if (!continuesRun || font != this.font || fontSize != this.fontSize) {
+			flush();
+			if (!inText) {
+				stream.beginText();
+				inText = true;
+				lineStarted = false;
+			}
+			if (font != this.font || fontSize != this.fontSize) {
+				stream.setFont(font, fontSize);
+				this.font = font;
+				this.fontSize = fontSize;
+			}
+			if (!continuesRun) {
+				moveTo(x, y);
+			}
+		}
+		run.append(text);
+		nextX = x + width;
+		nextY = y;
+		return nextX;
+	}
+
+	/**
+	 * <p>
+	 * Shows all pending text and closes the text object.
+	 * </p>
+	 *
+	 * @throws IOException
+	 *             If writing to the stream fails
+	 */
+	public void end() throws IOException {
+		flush();
+		if (inText) {
+			stream.endText();
+			inText = false;
+		}
+		// the font outlives the text object, but other code may change it in between
+		font = null;
+		leading = 0;
+	}
+
+	private void flush() throws IOException {
+		if (run.length() > 0) {
+			stream.showText(run.toString());
+			run.setLength(0);
+		}
+	}
+
+	private void moveTo(final float x, final float y) throws IOException {
+		if (!lineStarted) {
+			// the line matrix of a new text object is the identity
+			stream.newLineAtOffset(x, y);
+			lineStarted = true;
+		} else if (x == lineX && y < lineY) {
+			if (leading != lineY - y) {
+				leading = lineY - y;
+				stream.setLeading(leading);
+			}
+			stream.newLine();
+		} else {
+			stream.newLineAtOffset(x - lineX, y - lineY);
+		}
+		lineX = x;
+		lineY = y;
+	}
+}
@@ -0,0 +1,49 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+/**
+ * <p>
+ * Reads the operators of a page's content stream, for tests which check what
+ * was written.
+ * </p>
+ */
+public final class ContentOperators {
+
+	private ContentOperators() {
+	}
+
+	/**
+	 * @return names of the operators of designated page, in order
+	 */
+	public static List<String> of(final PDPage page) throws IOException {
+		final List<String> operators = new ArrayList<>();
+		final PDFStreamParser parser = new PDFStreamParser(page);
+		parser.parse();
+		for (final Object token : parser.getTokens()) {
+			if (token instanceof Operator) {
+				operators.add(((Operator) token).getName());
+			}
+		}
+		return operators;
+	}
+
+	/**
+	 * @return how often designated operator occurs
+	 */
+	public static int count(final List<String> operators, final String operator) {
+		int count = 0;
+		for (final String name : operators) {
+			if (name.equals(operator)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
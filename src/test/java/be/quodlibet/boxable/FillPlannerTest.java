@@ -0,0 +1,37 @@
+package be.quodlibet.boxable;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
+
+public class FillPlannerTest {
+
+	@Test
+	public void testFillsAreGroupedByColor() throws Exception {
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage();
+			doc.addPage(page);
+			final FillPlanner planner = new FillPlanner();
+			// three adjacent gray cells, interrupted by a white one
+			planner.addRect(0, 700, 50, 20, Color.LIGHT_GRAY);
+			planner.addRect(50, 700, 50, 20, Color.LIGHT_GRAY);
+			planner.addRect(100, 700, 50, 20, Color.WHITE);
+			planner.addRect(150, 700, 50, 20, Color.LIGHT_GRAY);
+			try (PageContentStreamOptimized stream = new PageContentStreamOptimized(
+					new PDPageContentStream(doc, page))) {
+				planner.draw(stream);
+			}
+			final List<String> operators = ContentOperators.of(page);
+			Assert.assertEquals(2, ContentOperators.count(operators, "f"));
+			Assert.assertEquals(2, ContentOperators.count(operators, "sc"));
+			Assert.assertEquals(3, ContentOperators.count(operators, "re"));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package be.quodlibet.boxable;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HeaderFormTest {
+
+	@Test
+	public void testHeaderIsSharedByPages() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			final BaseTable table = TableFixtures.createTable(doc);
+			final Row<PDPage> header = TableFixtures.addHeader(table);
+			TableFixtures.addRows(table, 200);
+			table.draw();
+
+			Assert.assertTrue(doc.getNumberOfPages() > 2);
+			final List<PDFormXObject> forms = getHeaderForms(doc);
+			// the first page draws the header as a regular row
+			Assert.assertNull(forms.get(0));
+			for (int i = 1; i < forms.size(); i++) {
+				Assert.assertSame("Header of page " + i, forms.get(1).getCOSObject(), forms.get(i).getCOSObject());
+			}
+			Assert.assertSame(doc.getPage(doc.getNumberOfPages() - 1).getCOSObject(),
+					header.getPage().getCOSObject());
+		}
+	}
+
+	@Test
+	public void testChangedHeaderIsPaintedAgain() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			final BaseTable table = TableFixtures.createTable(doc);
+			final Row<PDPage> header = TableFixtures.addHeader(table);
+			table.flush();
+			TableFixtures.addRows(table, 100);
+			table.flush();
+			final int pages = doc.getNumberOfPages();
+			header.getCells().get(0).setFillColor(Color.LIGHT_GRAY);
+			TableFixtures.addRows(table, 100);
+			table.draw();
+
+			final List<PDFormXObject> forms = getHeaderForms(doc);
+			Assert.assertTrue(doc.getNumberOfPages() > pages);
+			Assert.assertNotSame(forms.get(1).getCOSObject(), forms.get(doc.getNumberOfPages() - 1).getCOSObject());
+		}
+	}
+
+	private static List<PDFormXObject> getHeaderForms(final PDDocument doc) throws IOException {
+		final List<PDFormXObject> forms = new ArrayList<>();
+		for (final PDPage page : doc.getPages()) {
+			PDFormXObject form = null;
+			for (final COSName name : page.getResources().getXObjectNames()) {
+				final PDXObject xObject = page.getResources().getXObject(name);
+				if (xObject instanceof PDFormXObject) {
+					Assert.assertNull("Only one header form per page", form);
+					form = (PDFormXObject) xObject;
+				}
+			}
+			forms.add(form);
+		}
+		return forms;
+	}
+}
@@ -0,0 +1,24 @@
+package be.quodlibet.boxable;
+
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LayoutCacheTest {
+
+	@Test
+	public void testEqualParagraphsShareLayout() throws Exception {
+		final LayoutCache cache = new LayoutCache(16);
+		final Paragraph first = new Paragraph("Lorem ipsum dolor sit amet", PDType1Font.HELVETICA, 10, 80);
+		final Paragraph second = new Paragraph("Lorem ipsum dolor sit amet", PDType1Font.HELVETICA, 10, 80);
+		final Paragraph narrower = new Paragraph("Lorem ipsum dolor sit amet", PDType1Font.HELVETICA, 10, 40);
+		first.setLayoutCache(cache);
+		second.setLayoutCache(cache);
+		narrower.setLayoutCache(cache);
+		Assert.assertSame(first.getLayout(), second.getLayout());
+		Assert.assertNotSame(first.getLayout(), narrower.getLayout());
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(2, cache.size());
+	}
+}
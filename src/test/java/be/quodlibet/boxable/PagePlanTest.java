@@ -0,0 +1,170 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PagePlanTest {
+
+	@Test
+	public void testPlanMatchesDrawnTable() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage(PDRectangle.A4);
+			doc.addPage(page);
+			final BaseTable table = new BaseTable(700, 800, 50, 500, 50, doc, page, true, true);
+			final Row<PDPage> header = table.createRow(15f);
+			header.createCell(30, "Id");
+			header.createCell(70, "Description");
+			table.addHeaderRow(header);
+			for (int i = 0; i < 300; i++) {
+				final Row<PDPage> row = table.createRow(10f);
+				row.createCell(30, "Row " + i);
+				row.createCell(70, i % 7 == 0 ? "lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod"
+						: "lorem ipsum");
+			}
+			final List<Row<PDPage>> rows = new ArrayList<>(table.getRows());
+
+			final PagePlan plan = table.planPages();
+			table.draw();
+
+			Assert.assertEquals(rows.size(), plan.getRowCount());
+			Assert.assertEquals(doc.getNumberOfPages(), plan.getPageCount());
+			// the header row is drawn again on every page, check the data rows
+			for (int i = 1; i < rows.size(); i++) {
+				final Row<PDPage> row = rows.get(i);
+				final int rowPage = plan.getPage(i);
+				Assert.assertEquals("Page of row " + i, rowPage, doc.getPages().indexOf(row.getPage()));
+				Assert.assertTrue(plan.getFirstRow(rowPage) <= i && i < plan.getEndRow(rowPage));
+				// rows remember the position below them
+				Assert.assertEquals(plan.getYStart(i) - plan.getHeight(i, i + 1), row.getYStart(), 0.0f);
+			}
+			for (int p = 1; p < plan.getPageCount(); p++) {
+				Assert.assertTrue(plan.isHeaderRepeated(p));
+				Assert.assertEquals(plan.getFirstRow(p), plan.getEndRow(p - 1));
+			}
+			Assert.assertEquals(plan.getHeight(0, rows.size()), plan.getHeight(0, 10) + plan.getHeight(10, rows.size()),
+					0.001f);
+		}
+	}
+
+	@Test
+	public void testPlanIsDryRun() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage(PDRectangle.A4);
+			doc.addPage(page);
+			final BaseTable table = new BaseTable(700, 800, 50, 500, 50, doc, page, true, true);
+			final Row<PDPage> header = table.createRow(15f);
+			header.createCell(100, "Header");
+			table.addHeaderRow(header);
+			for (int i = 0; i < 300; i++) {
+				table.createRow(10f).createCell(100, "Row " + i);
+			}
+
+			final PagePlan plan = table.planPages();
+			Assert.assertEquals("Planning must not create pages", 1, doc.getNumberOfPages());
+			Assert.assertNull("Planning must not create content", page.getCOSObject().getItem("Contents"));
+			Assert.assertTrue(plan.getPageCount() > 2);
+
+			Assert.assertEquals(700 - plan.getYStart(plan.getEndRow(0) - 1) + plan.getHeight(plan.getEndRow(0) - 1,
+					plan.getEndRow(0)), plan.getUsedHeight(0), 0.01f);
+			for (int p = 1; p < plan.getPageCount(); p++) {
+				// repeated header row plus the rows of the page
+				Assert.assertEquals(header.getHeight() + plan.getHeight(plan.getFirstRow(p), plan.getEndRow(p)),
+						plan.getUsedHeight(p), 0.01f);
+			}
+			Assert.assertEquals(plan.getYEnd(), table.draw(), 0f);
+			Assert.assertEquals(plan.getPageCount(), doc.getNumberOfPages());
+		}
+	}
+
+	@Test
+	public void testPlanMatchesPreviousPagination() throws IOException {
+		final Random random = new Random(17);
+		for (int run = 0; run < 200; run++) {
+			try (PDDocument doc = new PDDocument()) {
+				final PDPage page = new PDPage(PDRectangle.A4);
+				doc.addPage(page);
+				final float bottomMargin = 20 + random.nextInt(60);
+				final float yStartNewPage = 700 + random.nextInt(100);
+				final float pageTopMargin = random.nextInt(60);
+				final float yStart = bottomMargin + 5 + random.nextInt((int) (yStartNewPage - bottomMargin));
+				final BaseTable table = new BaseTable(yStart, yStartNewPage, pageTopMargin, bottomMargin, 500, 50, doc,
+						page, true, true);
+				final int headerCount = random.nextInt(3);
+				for (int i = 0; i < headerCount; i++) {
+					final Row<PDPage> header = table.createRow(10 + random.nextInt(30));
+					header.createCell(100, "Header " + i);
+					table.addHeaderRow(header);
+				}
+				final int rowCount = 1 + random.nextInt(200);
+				for (int i = 0; i < rowCount; i++) {
+					// mostly short rows, some of them taller than the rest of a page
+					final float height = random.nextInt(10) == 0 ? 100 + random.nextInt(400) : 5 + random.nextInt(40);
+					table.createRow(height).createCell(100, random.nextBoolean() ? "Row " + i
+							: "lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor");
+				}
+				final List<Row<PDPage>> rows = new ArrayList<>(table.getRows());
+				final float[] yStarts = new float[rows.size()];
+				final int[] pages = new int[rows.size()];
+				final float yEnd = paginate(rows, headerCount, yStart, yStartNewPage - pageTopMargin, bottomMargin,
+						yStarts, pages);
+
+				final PagePlan plan = table.planPages();
+				final String message = "Run " + run;
+				Assert.assertEquals(message, rows.size(), plan.getRowCount());
+				Assert.assertEquals(message, pages[rows.size() - 1] + 1, plan.getPageCount());
+				Assert.assertEquals(message, yEnd, plan.getYEnd(), 0f);
+				for (int i = 0; i < rows.size(); i++) {
+					Assert.assertEquals(message + ", page of row " + i, pages[i], plan.getPage(i));
+					Assert.assertEquals(message + ", Y of row " + i, yStarts[i], plan.getYStart(i), 0f);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pagination of the former draw loop, which broke pages while it drew the
+	 * rows one by one: header rows move to a new page together with the first
+	 * data row, a row which doesn't fit starts a new page below the repeated
+	 * header rows. The header rows lead the rows.
+	 *
+	 * @return Y position below the last row
+	 */
+	private static float paginate(final List<Row<PDPage>> rows, final int headerCount, final float yStart,
+			final float pageYStart, final float bottomMargin, final float[] yStarts, final int[] pages) {
+		float minimumHeight = 0f;
+		for (int i = 0; i < headerCount; i++) {
+			minimumHeight += rows.get(i).getHeight();
+		}
+		if (rows.size() > headerCount) {
+			minimumHeight += rows.get(headerCount).getHeight();
+		}
+		float y = yStart;
+		int page = 0;
+		for (int i = 0; i < rows.size(); i++) {
+			final Row<PDPage> row = rows.get(i);
+			if (i < headerCount && y - minimumHeight <= bottomMargin) {
+				page++;
+				y = pageYStart;
+			}
+			if (y - row.getHeight() <= bottomMargin) {
+				page++;
+				y = pageYStart;
+				for (int h = 0; h < headerCount; h++) {
+					y -= rows.get(h).getHeight();
+				}
+			}
+			yStarts[i] = y;
+			pages[i] = page;
+			y -= row.getHeight();
+		}
+		return y;
+	}
+}
@@ -0,0 +1,125 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import be.quodlibet.boxable.utils.FontUtils;
+import be.quodlibet.boxable.utils.GlyphMetrics;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParagraphTest {
+
+	@Test
+	public void testLayoutIsReused() throws Exception {
+		final Paragraph paragraph = new Paragraph("Lorem ipsum dolor sit amet, consectetur adipiscing elit",
+				PDType1Font.HELVETICA, 10, 80);
+		final LayoutResult layout = paragraph.getLayout();
+		Assert.assertSame("Layout should be computed only once", layout, paragraph.getLayout());
+		Assert.assertEquals(layout.getLines(), paragraph.getLines());
+		Assert.assertEquals(layout.getHeight(), paragraph.getHeight(), 0.0f);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testLayoutTokensAreImmutable() throws Exception {
+		final Paragraph paragraph = new Paragraph("Lorem ipsum dolor sit amet, consectetur adipiscing elit",
+				PDType1Font.HELVETICA, 10, 80);
+		paragraph.getLayout().getLineTokens().get(0).clear();
+	}
+
+	@Test
+	public void testLayoutIsInvalidated() throws Exception {
+		final Paragraph paragraph = new Paragraph("Lorem ipsum dolor sit amet, consectetur adipiscing elit",
+				PDType1Font.HELVETICA, 10, 80);
+		final LayoutResult layout = paragraph.getLayout();
+		paragraph.setLineSpacing(2);
+		Assert.assertNotSame("Line spacing change should invalidate layout", layout, paragraph.getLayout());
+		Assert.assertTrue(paragraph.getHeight() > layout.getHeight());
+	}
+
+	@Test
+	public void testOverlongWordIsSplit() throws Exception {
+		final String digest = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+		final Paragraph paragraph = new Paragraph(digest, PDType1Font.COURIER, 8, 100);
+		final StringBuilder joined = new StringBuilder();
+		for (final String line : paragraph.getLines()) {
+			Assert.assertTrue(line, FontUtils.getStringWidth(PDType1Font.COURIER, line, 8) < 100);
+			joined.append(line);
+		}
+		Assert.assertTrue(paragraph.getLines().size() > 2);
+		Assert.assertEquals(digest, joined.toString());
+	}
+
+	@Test
+	public void testMeasureMatchesLayout() throws Exception {
+		final String text = "<p>Lorem <b>ipsum</b> dolor</p><ul><li>sit amet,</li><li>consectetur adipiscing</li></ul>elit";
+		final Paragraph measured = new Paragraph(text, PDType1Font.HELVETICA, 10, 80);
+		final Paragraph laidOut = new Paragraph(text, PDType1Font.HELVETICA, 10, 80);
+		final LayoutResult layout = laidOut.getLayout();
+		Assert.assertEquals(layout.getHeight(), measured.getHeight(), 0.0f);
+		Assert.assertEquals(layout.getMaxLineWidth(), measured.getMaxLineWidth(), 0.0f);
+		measured.setLineSpacing(2);
+		Assert.assertEquals(measured.getLayout().getHeight(), measured.getHeight(), 0.0f);
+	}
+
+	@Test
+	public void testSplitMatchesLinearSplit() throws Exception {
+		final String alphabet = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_=/+";
+		final PDFont[] fonts = { PDType1Font.HELVETICA, PDType1Font.TIMES_BOLD, PDType1Font.COURIER };
+		final Random random = new Random(42);
+		for (int n = 0; n < 500; n++) {
+			final PDFont font = fonts[random.nextInt(fonts.length)];
+			final float fontSize = 6 + random.nextInt(9);
+			// lines are multiples of 1/1000 of the font size wide, so they never fill this width exactly: at a
+			// tie, summing the advances and subtracting prefix sums may round to different sides of the width
+			final float width = 30 + random.nextInt(170) + 0.3333f;
+			final StringBuilder word = new StringBuilder();
+			for (int i = 40 + random.nextInt(80); i > 0; i--) {
+				word.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			final Paragraph paragraph = new Paragraph(word.toString(), font, fontSize, width, HorizontalAlignment.LEFT);
+			Assert.assertEquals(font.getName() + " " + fontSize + " " + width + " " + word, splitLinearly(font, fontSize, width, word.toString()),
+					paragraph.getLines());
+		}
+	}
+
+	/**
+	 * <p>
+	 * Splits a word wider than the paragraph one character at a time, the way
+	 * overlong words were split before the binary search.
+	 * </p>
+	 */
+	private static List<String> splitLinearly(final PDFont font, final float fontSize, final float maxWidth,
+			String word) throws IOException {
+		final GlyphMetrics metrics = GlyphMetrics.of(font);
+		final List<String> lines = new ArrayList<>();
+		while (FontUtils.getStringWidth(font, word, fontSize) > maxWidth) {
+			float width = 0;
+			final StringBuilder firstPartOfWord = new StringBuilder();
+			final StringBuilder restOfTheWord = new StringBuilder();
+			for (int i = 0; i < word.length(); i++) {
+				final char c = word.charAt(i);
+				width += metrics.getWidth(c) / 1000f * fontSize;
+				if (width < maxWidth) {
+					firstPartOfWord.append(c);
+				} else if (i == 0) {
+					// not even the first character fits, it gets a line of its own
+					firstPartOfWord.append(c);
+					restOfTheWord.append(word, 1, word.length());
+					break;
+				} else {
+					restOfTheWord.append(c);
+				}
+			}
+			lines.add(firstPartOfWord.toString());
+			word = restOfTheWord.toString();
+		}
+		lines.add(word);
+		return lines;
+	}
+}
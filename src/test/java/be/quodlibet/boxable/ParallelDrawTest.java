@@ -0,0 +1,96 @@
+package be.quodlibet.boxable;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelDrawTest {
+
+	@Test
+	public void testParallelDrawMatchesSequentialDraw() throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (PDDocument sequential = new PDDocument(); PDDocument parallel = new PDDocument()) {
+			final BaseTable table = createTable(sequential);
+			final float expectedYStart = table.draw();
+
+			final BaseTable concurrent = createTable(parallel);
+			Assert.assertEquals(expectedYStart, concurrent.draw(executor), 0f);
+
+			Assert.assertTrue(sequential.getNumberOfPages() > 2);
+			Assert.assertEquals(sequential.getNumberOfPages(), parallel.getNumberOfPages());
+			for (int i = 0; i < sequential.getNumberOfPages(); i++) {
+				try (InputStream expected = sequential.getPage(i).getContents();
+						InputStream actual = parallel.getPage(i).getContents()) {
+					Assert.assertArrayEquals("Content of page " + i, IOUtils.toByteArray(expected),
+							IOUtils.toByteArray(actual));
+				}
+			}
+			parallel.save(new ByteArrayOutputStream());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testConcurrentDrawsShareStandard14Font() throws Exception {
+		final byte[][] expected;
+		try (PDDocument sequential = new PDDocument()) {
+			createTable(sequential).draw();
+			expected = contents(sequential);
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			// every table measures and shows its text in the same PDType1Font.HELVETICA instance
+			final List<Future<byte[][]>> drawn = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				drawn.add(executor.submit(new Callable<byte[][]>() {
+					@Override
+					public byte[][] call() throws IOException {
+						try (PDDocument parallel = new PDDocument()) {
+							createTable(parallel).draw(executor);
+							return contents(parallel);
+						}
+					}
+				}));
+			}
+			for (final Future<byte[][]> contents : drawn) {
+				final byte[][] actual = contents.get();
+				Assert.assertEquals(expected.length, actual.length);
+				for (int i = 0; i < expected.length; i++) {
+					Assert.assertArrayEquals("Content of page " + i, expected[i], actual[i]);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static byte[][] contents(final PDDocument doc) throws IOException {
+		final byte[][] contents = new byte[doc.getNumberOfPages()][];
+		for (int i = 0; i < contents.length; i++) {
+			try (InputStream content = doc.getPage(i).getContents()) {
+				contents[i] = IOUtils.toByteArray(content);
+			}
+		}
+		return contents;
+	}
+
+	private static BaseTable createTable(final PDDocument doc) throws IOException {
+		final BaseTable table = TableFixtures.createTable(doc);
+		TableFixtures.addHeader(table).getCells().get(0).setFillColor(Color.LIGHT_GRAY);
+		TableFixtures.addRows(table, 300);
+		return table;
+	}
+}
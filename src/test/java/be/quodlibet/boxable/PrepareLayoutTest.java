@@ -0,0 +1,71 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.text.WrappingFunction;
+
+public class PrepareLayoutTest {
+
+	@Test
+	public void testParallelLayoutMatchesSequential() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			final BaseTable sequential = createTable(doc);
+			final BaseTable parallel = createTable(doc);
+			final ExecutorService executor = Executors.newFixedThreadPool(4);
+			try {
+				parallel.prepareLayout(executor);
+			} finally {
+				executor.shutdown();
+			}
+			Assert.assertEquals(sequential.getRows().size(), parallel.getRows().size());
+			for (int i = 0; i < sequential.getRows().size(); i++) {
+				final Row<PDPage> expected = sequential.getRows().get(i);
+				final Row<PDPage> actual = parallel.getRows().get(i);
+				Assert.assertEquals(expected.getHeight(), actual.getHeight(), 0.0f);
+				for (int j = 0; j < expected.getCells().size(); j++) {
+					Assert.assertEquals(expected.getCells().get(j).getParagraph().getLines(),
+							actual.getCells().get(j).getParagraph().getLines());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDrawnParagraphsAreLaidOutOnce() throws IOException {
+		final AtomicInteger layouts = new AtomicInteger();
+		final WrappingFunction counting = new WrappingFunction() {
+			@Override
+			public String[] getLines(final String text) {
+				layouts.incrementAndGet();
+				return new String[] { text };
+			}
+		};
+		try (PDDocument doc = new PDDocument()) {
+			final BaseTable table = TableFixtures.createTable(doc);
+			TableFixtures.addRows(table, 20);
+			for (final Row<PDPage> row : table.getRows()) {
+				for (final Cell<PDPage> cell : row.getCells()) {
+					cell.setWrappingFunction(counting);
+				}
+			}
+			table.draw();
+			// measuring the row heights must not lay out the paragraphs a second time
+			Assert.assertEquals(40, layouts.get());
+		}
+	}
+
+	private static BaseTable createTable(final PDDocument doc) throws IOException {
+		final BaseTable table = TableFixtures.createTable(doc);
+		TableFixtures.addHeader(table);
+		TableFixtures.addRows(table, 500);
+		return table;
+	}
+}
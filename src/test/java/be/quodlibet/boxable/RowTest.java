@@ -0,0 +1,68 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RowTest {
+
+	@Test
+	public void testHeightFollowsCellChanges() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage(PDRectangle.A4);
+			doc.addPage(page);
+			final BaseTable table = new BaseTable(800, 800, 50, 500, 50, doc, page, true, true);
+			final Row<PDPage> row = table.createRow(10f);
+			final Cell<PDPage> cell = row.createCell(20, "short");
+			final float height = row.getHeight();
+			Assert.assertEquals(height, row.getHeight(), 0.0f);
+
+			cell.setText("a much longer text which has to be wrapped over several lines");
+			final float wrappedHeight = row.getHeight();
+			Assert.assertTrue(wrappedHeight > height);
+
+			cell.setTopPadding(cell.getTopPadding() + 10);
+			Assert.assertEquals(wrappedHeight + 10, row.getHeight(), 0.001f);
+
+			final Cell<PDPage> higher = row.createCell(20, "x");
+			higher.setHeight(wrappedHeight + 50);
+			Assert.assertEquals(wrappedHeight + 50, row.getHeight(), 0.0f);
+		}
+	}
+
+	@Test
+	public void testParagraphFollowsCellChanges() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage(PDRectangle.A4);
+			doc.addPage(page);
+			final BaseTable table = new BaseTable(800, 800, 50, 500, 50, doc, page, true, true);
+			final Row<PDPage> row = table.createRow(10f);
+			final Cell<PDPage> cell = row.createCell(20, "a much longer text which has to be wrapped over several lines");
+			final float height = cell.getCellHeight();
+			final List<String> lines = cell.getParagraph().getLines();
+
+			cell.setWidth(cell.getWidth() * 2);
+			final List<String> wideLines = cell.getParagraph().getLines();
+			Assert.assertTrue(wideLines.size() < lines.size());
+			Assert.assertTrue(wideLines.size() > 1);
+			// rows never shrink, the cell does
+			Assert.assertTrue(cell.getCellHeight() < height);
+			final float wideHeight = cell.getCellHeight();
+
+			cell.setLineSpacing(2);
+			Assert.assertEquals(2, cell.getParagraph().getLineSpacing(), 0.0f);
+			Assert.assertTrue(cell.getCellHeight() > wideHeight);
+
+			cell.setHeaderCell(true);
+			cell.setFontBold(PDType1Font.COURIER_BOLD);
+			Assert.assertSame(PDType1Font.COURIER_BOLD, cell.getParagraph().getFont(false, false));
+			Assert.assertNotEquals(wideLines, cell.getParagraph().getLines());
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package be.quodlibet.boxable;
+
+import java.awt.Color;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+/**
+ * <p>
+ * The table shared by the tests which compare drawing strategies: an A4 table
+ * with a header and rows of varying height, fill and style.
+ * </p>
+ */
+final class TableFixtures {
+
+	private TableFixtures() {
+	}
+
+	static BaseTable createTable(final PDDocument doc) throws IOException {
+		final PDPage page = new PDPage(PDRectangle.A4);
+		doc.addPage(page);
+		return new BaseTable(800, 800, 50, 500, 50, doc, page, true, true);
+	}
+
+	static Row<PDPage> addHeader(final BaseTable table) {
+		final Row<PDPage> header = table.createRow(15f);
+		header.createCell(30, "Id");
+		header.createCell(70, "<b>Description</b>");
+		table.addHeaderRow(header);
+		return header;
+	}
+
+	static void addRows(final BaseTable table, final int count) {
+		for (int i = 0; i < count; i++) {
+			addRow(table, i);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Adds row number {@code i}: every 7th row wraps over several lines, every
+	 * 3rd row has a filled cell.
+	 * </p>
+	 */
+	static void addRow(final BaseTable table, final int i) {
+		final Row<PDPage> row = table.createRow(10f);
+		row.createCell(30, "Row " + i);
+		final Cell<PDPage> cell = row.createCell(70, i % 7 == 0
+				? "lorem <i>ipsum</i> dolor sit amet, consectetur adipiscing elit, sed do eiusmod-" + i : "lorem ipsum");
+		if (i % 3 == 0) {
+			cell.setFillColor(Color.YELLOW);
+		}
+	}
+}
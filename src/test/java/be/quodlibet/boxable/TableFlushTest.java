@@ -0,0 +1,96 @@
+package be.quodlibet.boxable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TableFlushTest {
+
+	@Test
+	public void testFlushedTableMatchesDrawnTable() throws IOException {
+		try (PDDocument drawn = new PDDocument(); PDDocument flushed = new PDDocument()) {
+			final BaseTable table = createTable(drawn);
+			addRows(table, false);
+			table.draw();
+
+			final BaseTable streamed = createTable(flushed);
+			addRows(streamed, true);
+			Assert.assertTrue("Flushed rows should be dropped", streamed.getRows().size() <= 1);
+			streamed.draw();
+
+			Assert.assertTrue(drawn.getNumberOfPages() > 2);
+			Assert.assertEquals(drawn.getNumberOfPages(), flushed.getNumberOfPages());
+			for (int i = 0; i < drawn.getNumberOfPages(); i++) {
+				try (InputStream expected = drawn.getPage(i).getContents();
+						InputStream actual = flushed.getPage(i).getContents()) {
+					Assert.assertArrayEquals("Content of page " + i, IOUtils.toByteArray(expected),
+							IOUtils.toByteArray(actual));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRowsAreFlushedAtThreshold() throws IOException {
+		try (PDDocument drawn = new PDDocument(); PDDocument streamed = new PDDocument()) {
+			final BaseTable table = createTable(drawn);
+			addRows(table, false);
+			table.draw();
+
+			final BaseTable streaming = createTable(streamed);
+			streaming.setFlushThreshold(10);
+			TableFixtures.addHeader(streaming);
+			for (int i = 0; i < 200; i++) {
+				TableFixtures.addRow(streaming, i);
+				Assert.assertTrue(streaming.getRows().size() <= 10);
+			}
+			streaming.draw();
+
+			Assert.assertEquals(drawn.getNumberOfPages(), streamed.getNumberOfPages());
+			for (int i = 0; i < drawn.getNumberOfPages(); i++) {
+				try (InputStream expected = drawn.getPage(i).getContents();
+						InputStream actual = streamed.getPage(i).getContents()) {
+					Assert.assertArrayEquals("Content of page " + i, IOUtils.toByteArray(expected),
+							IOUtils.toByteArray(actual));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMinimumHeightAfterFlush() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			final BaseTable table = createTable(doc);
+			final Row<PDPage> header = TableFixtures.addHeader(table);
+			TableFixtures.addRow(table, 1);
+			table.flush();
+			// the first pending row is higher than the next one
+			final Row<PDPage> first = table.createRow(30f);
+			first.createCell(100, "first");
+			table.createRow(10f).createCell(100, "second");
+			Assert.assertEquals(header.getHeight() + first.getHeight(), table.getMinimumHeight(), 0.0f);
+		}
+	}
+
+	private static BaseTable createTable(final PDDocument doc) throws IOException {
+		return TableFixtures.createTable(doc);
+	}
+
+	private static void addRows(final BaseTable table, final boolean flush) throws IOException {
+		TableFixtures.addHeader(table);
+		if (flush) {
+			table.flush();
+		}
+		for (int i = 0; i < 200; i++) {
+			TableFixtures.addRow(table, i);
+			if (flush) {
+				table.flush();
+			}
+		}
+	}
+}
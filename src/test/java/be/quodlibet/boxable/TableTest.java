@@ -16,6 +16,7 @@ import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.google.common.io.Files;
@@ -904,4 +905,18 @@ public class TableTest {
 		doc.addPage(page);
 		return page;
 	}
+
+	@Test
+	public void testBordersAreStrokedBeforeRowContent() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			final BaseTable table = TableFixtures.createTable(doc);
+			TableFixtures.addRows(table, 10);
+			table.draw();
+
+			// each row strokes its borders before its text, so text is never covered by a border
+			final List<String> operators = ContentOperators.of(doc.getPage(0));
+			Assert.assertTrue(operators.indexOf("S") < operators.indexOf("BT"));
+			Assert.assertTrue(operators.lastIndexOf("S") < operators.lastIndexOf("BT"));
+		}
+	}
 }
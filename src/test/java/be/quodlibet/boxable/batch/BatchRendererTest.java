@@ -0,0 +1,134 @@
+package be.quodlibet.boxable.batch;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.LayoutCache;
+import be.quodlibet.boxable.datatable.DataTable;
+import be.quodlibet.boxable.line.LineStyle;
+import be.quodlibet.boxable.utils.FontUtils;
+
+public class BatchRendererTest {
+
+	private static final String FONT = "org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf";
+
+	@Test
+	public void testRenderAllSharesTemplates() throws IOException {
+		final DataTable template;
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage(PDRectangle.A4);
+			template = new DataTable(new BaseTable(800, 800, 50, 500, 50, doc, page, true, true), page);
+			template.getHeaderCellTemplate().setFillColor(Color.ORANGE);
+		}
+		final LayoutCache layoutCache = new LayoutCache(1000);
+
+		final List<ReportJob> jobs = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			final int rows = 10 + i * 5;
+			jobs.add(new ReportJob() {
+				@Override
+				public void render(final PDDocument document) throws IOException {
+					final PDPage page = new PDPage(PDRectangle.A4);
+					document.addPage(page);
+					final BaseTable table = new BaseTable(800, 800, 50, 500, 50, document, page, true, true);
+					table.setLayoutCache(layoutCache);
+					final DataTable dataTable = new DataTable(table, template);
+					Assert.assertEquals(Color.ORANGE, dataTable.getHeaderCellTemplate().getFillColor());
+					final List<List> data = new ArrayList<>();
+					data.add(Arrays.asList("Id", "Name"));
+					for (int row = 0; row < rows; row++) {
+						data.add(Arrays.asList("" + row, "Name " + row));
+					}
+					dataTable.addListToTable(data, DataTable.HASHEADER);
+					table.draw();
+				}
+			});
+		}
+		jobs.add(new ReportJob() {
+			@Override
+			public void render(final PDDocument document) throws IOException {
+				throw new IOException("Failing job");
+			}
+		});
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final BatchResult batch = new BatchRenderer(executor).renderAll(jobs);
+			Assert.assertEquals(jobs.size(), batch.getResults().size());
+			Assert.assertEquals(1, batch.getFailureCount());
+			for (int i = 0; i < jobs.size() - 1; i++) {
+				final ReportResult result = batch.getResults().get(i);
+				Assert.assertSame(jobs.get(i), result.getJob());
+				Assert.assertTrue(result.isSuccessful());
+				try (PDDocument rendered = PDDocument.load(result.getBytes())) {
+					Assert.assertEquals(result.getPageCount(), rendered.getNumberOfPages());
+				}
+			}
+			final ReportResult failed = batch.getResults().get(jobs.size() - 1);
+			Assert.assertFalse(failed.isSuccessful());
+			Assert.assertEquals("Failing job", failed.getFailure().getMessage());
+			Assert.assertTrue(batch.getPageCount() >= jobs.size() - 1);
+			Assert.assertTrue(batch.getJobsPerSecond() > 0);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testTemplateFontsAndBordersAreCopied() throws IOException {
+		try (PDDocument templateDoc = new PDDocument(); PDDocument doc = new PDDocument()) {
+			final PDFont templateFont = FontUtils.loadFont(templateDoc, FONT);
+			final DataTable template = new DataTable(createTable(templateDoc), new PDPage(), templateFont, templateFont,
+					10, true);
+			final LineStyle bottom = new LineStyle(Color.RED, 2f);
+			template.getDataCellTemplateEven().setBottomBorderStyle(bottom);
+
+			final DataTable dataTable = new DataTable(createTable(doc), template);
+			final PDFont font = dataTable.getDataCellTemplateEven().getFont();
+			Assert.assertNotSame(templateFont, font);
+			Assert.assertSame(font, dataTable.getHeaderCellTemplate().getFont());
+			Assert.assertSame(bottom, dataTable.getDataCellTemplateEven().getBottomBorder());
+			Assert.assertEquals(template.getDataCellTemplateEven().getTopBorder(),
+					dataTable.getDataCellTemplateEven().getTopBorder());
+
+			final List<List> data = new ArrayList<>();
+			data.add(Arrays.asList("Id", "Name"));
+			data.add(Arrays.asList("1", "Boxable"));
+			dataTable.addListToTable(data, DataTable.HASHEADER);
+			dataTable.getTable().draw();
+			doc.save(new ByteArrayOutputStream());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTemplateWithForeignFont() throws IOException {
+		try (PDDocument templateDoc = new PDDocument(); PDDocument doc = new PDDocument()) {
+			final PDFont templateFont = PDType0Font.load(templateDoc,
+					BatchRendererTest.class.getClassLoader().getResourceAsStream(FONT));
+			final DataTable template = new DataTable(createTable(templateDoc), new PDPage(), templateFont, templateFont,
+					10, true);
+			new DataTable(createTable(doc), template);
+		}
+	}
+
+	private static BaseTable createTable(final PDDocument document) throws IOException {
+		final PDPage page = new PDPage(PDRectangle.A4);
+		document.addPage(page);
+		return new BaseTable(800, 800, 50, 500, 50, document, page, true, true);
+	}
+}
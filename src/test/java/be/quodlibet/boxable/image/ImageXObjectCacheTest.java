@@ -0,0 +1,38 @@
+package be.quodlibet.boxable.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImageXObjectCacheTest {
+
+	@Test
+	public void testImageEmbeddedOncePerDocument() throws IOException {
+		final BufferedImage logo = createImage(Color.RED);
+		try (PDDocument doc = new PDDocument(); PDDocument other = new PDDocument()) {
+			final PDImageXObject embedded = new Image(logo).createImageXObject(doc);
+			Assert.assertSame(embedded, new Image(logo).scaleByWidth(10).createImageXObject(doc));
+			Assert.assertSame(embedded, ImageXObjectCache.get(doc, createImage(Color.RED)));
+			Assert.assertNotSame(embedded, ImageXObjectCache.get(doc, createImage(Color.BLUE)));
+			Assert.assertNotSame(embedded, ImageXObjectCache.get(other, logo));
+
+			ImageXObjectCache.clear(doc);
+			Assert.assertNotSame(embedded, ImageXObjectCache.get(doc, logo));
+		}
+	}
+
+	private static BufferedImage createImage(final Color color) {
+		final BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+		final Graphics2D graphics = image.createGraphics();
+		graphics.setColor(color);
+		graphics.fillRect(0, 0, 20, 10);
+		graphics.dispose();
+		return image;
+	}
+}
@@ -0,0 +1,44 @@
+package be.quodlibet.boxable.line;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.ContentOperators;
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
+
+public class BorderPlannerTest {
+
+	@Test
+	public void testCollinearLinesAreMerged() throws Exception {
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage();
+			doc.addPage(page);
+			final BorderPlanner planner = new BorderPlanner();
+			// a column line split into three rows, two touching cells of one row line
+			planner.addLine(100, 700, 100, 680, new LineStyle(Color.BLACK, 1));
+			planner.addLine(100, 680, 100, 660, new LineStyle(Color.BLACK, 1));
+			planner.addLine(100, 660, 100, 640, new LineStyle(Color.BLACK, 1));
+			planner.addLine(0, 700, 100, 700, new LineStyle(Color.BLACK, 1));
+			planner.addLine(100, 700, 200, 700, new LineStyle(Color.BLACK, 1));
+			// same color and width, but dashed lines are never merged
+			planner.addLine(0, 600, 100, 600, LineStyle.produceDashed(Color.BLACK, 1));
+			planner.addLine(100, 600, 200, 600, LineStyle.produceDashed(Color.BLACK, 1));
+			Assert.assertFalse(planner.isEmpty());
+			try (PageContentStreamOptimized stream = new PageContentStreamOptimized(
+					new PDPageContentStream(doc, page))) {
+				planner.draw(stream);
+			}
+			Assert.assertTrue(planner.isEmpty());
+			final List<String> operators = ContentOperators.of(page);
+			Assert.assertEquals(2, ContentOperators.count(operators, "S"));
+			Assert.assertEquals(4, ContentOperators.count(operators, "m"));
+			Assert.assertEquals(4, ContentOperators.count(operators, "l"));
+		}
+	}
+}
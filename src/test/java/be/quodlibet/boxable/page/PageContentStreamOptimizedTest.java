@@ -0,0 +1,49 @@
+package be.quodlibet.boxable.page;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.ContentOperators;
+import be.quodlibet.boxable.line.LineStyle;
+import be.quodlibet.boxable.utils.PDStreamUtils;
+
+public class PageContentStreamOptimizedTest {
+
+	@Test
+	public void testRedundantStateIsSkipped() throws Exception {
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage();
+			doc.addPage(page);
+			final LineStyle solid = new LineStyle(Color.BLACK, 1);
+			final LineStyle dashed = LineStyle.produceDashed(Color.RED, 1);
+			try (PageContentStreamOptimized stream = new PageContentStreamOptimized(
+					new PDPageContentStream(doc, page))) {
+				for (int i = 0; i < 3; i++) {
+					PDStreamUtils.setLineStyles(stream, solid);
+					stream.moveTo(0, i * 10);
+					stream.lineTo(100, i * 10);
+					stream.stroke();
+				}
+				PDStreamUtils.setLineStyles(stream, dashed);
+				stream.saveGraphicsState();
+				PDStreamUtils.setLineStyles(stream, solid);
+				stream.restoreGraphicsState();
+				// back to the dashed style of the restored state
+				PDStreamUtils.setLineStyles(stream, dashed);
+			}
+			final List<String> operators = ContentOperators.of(page);
+			Assert.assertEquals(3, ContentOperators.count(operators, "S"));
+			Assert.assertEquals(3, ContentOperators.count(operators, "SC"));
+			Assert.assertEquals(3, ContentOperators.count(operators, "sc"));
+			Assert.assertEquals(3, ContentOperators.count(operators, "d"));
+			Assert.assertEquals(1, ContentOperators.count(operators, "w"));
+			Assert.assertEquals(1, ContentOperators.count(operators, "J"));
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package be.quodlibet.boxable.text;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PipelineLayerTest {
+
+	private final PDFont font = PDType1Font.HELVETICA;
+
+	private float width(String text) throws Exception {
+		return font.getStringWidth(text) / 1000f * 10;
+	}
+
+	@Test
+	public void testTrailingWhitespace() throws Exception {
+		final PipelineLayer layer = new PipelineLayer();
+		layer.push(font, 10, new Token(TokenType.TEXT, "Hello "));
+		layer.push(font, 10, new Token(TokenType.TEXT, "world  "));
+		Assert.assertEquals("Hello world", layer.trimmedText());
+		Assert.assertEquals(width("Hello world"), layer.trimmedWidth(), 0.001f);
+		Assert.assertEquals(width("Hello world  "), layer.width(), 0.001f);
+	}
+
+	@Test
+	public void testPushPipeline() throws Exception {
+		final PipelineLayer line = new PipelineLayer();
+		final PipelineLayer word = new PipelineLayer();
+		line.push(font, 10, new Token(TokenType.TEXT, "one "));
+		word.push(font, 10, new Token(TokenType.TEXT, "two-"));
+		word.push(font, 10, new Token(TokenType.TEXT, "three "));
+		line.push(word);
+		Assert.assertTrue("Pushed pipeline should be reset", word.isEmpty());
+		Assert.assertEquals("one two-three", line.trimmedText());
+		Assert.assertEquals(width("one two-three"), line.trimmedWidth(), 0.001f);
+	}
+}
@@ -156,4 +156,39 @@ public class TokenizerTest {
 		}
 	
 	}
+
+	@Test
+	public void testSpans() throws Exception {
+		final String text = "ab <b>cd</b><br/>e";
+		final TokenSpans spans = new TokenSpans();
+		Tokenizer.tokenize(text, wrappingFunction, spans);
+		final List<Token> tokens = Tokenizer.tokenize(text, wrappingFunction);
+		Assert.assertEquals(tokens.size(), spans.size());
+		for (int i = 0; i < spans.size(); i++) {
+			Assert.assertEquals(tokens.get(i).getType(), spans.getType(i));
+			if (TokenType.TEXT.equals(spans.getType(i))) {
+				Assert.assertEquals(tokens.get(i).getData(),
+						text.substring(spans.getStart(i), spans.getEnd(i)));
+			} else if (spans.getTag(i) != Tokenizer.NO_TAG) {
+				Assert.assertEquals(tokens.get(i).getData(), Tokenizer.getTagName(spans.getTag(i)));
+			}
+		}
+		// "<br/>" spans from offset 12 to 17
+		Assert.assertEquals(TokenType.WRAP_POINT, spans.getType(5));
+		Assert.assertEquals(12, spans.getStart(5));
+		Assert.assertEquals(5, spans.getLength(5));
+	}
+
+	@Test
+	public void testDefaultWrappingFunction() throws Exception {
+		final WrappingFunction defaultWrappingFunction = new DefaultWrappingFunction();
+		for (final String text : new String[] { "", " ", "a", "1 123 123456 12", "mail@example.com, then: more; end.",
+				"tabs\tand\nnewlines\r\n", "trailing  ", "self-evident--dashes", "<b>bold</b> text" }) {
+			Assert.assertArrayEquals(text, wrappingFunction.getLines(text), defaultWrappingFunction.getLines(text));
+			Assert.assertArrayEquals(text, wrappingFunction.getWrapPoints(text),
+					defaultWrappingFunction.getWrapPoints(text));
+			Assert.assertEquals(text, Tokenizer.tokenize(text, wrappingFunction).toString(),
+					Tokenizer.tokenize(text, defaultWrappingFunction).toString());
+		}
+	}
 }
@@ -0,0 +1,108 @@
+package be.quodlibet.boxable.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FontProgramCacheTest {
+
+	private static final String FONT = "org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf";
+
+	@Test
+	public void testProgramSharedByDocuments() throws IOException {
+		try (PDDocument first = new PDDocument(); PDDocument second = new PDDocument()) {
+			final PDType0Font firstFont = FontProgramCache.load(first, FONT);
+			final PDType0Font secondFont = FontProgramCache.load(second, FONT);
+			Assert.assertNotSame(firstFont, secondFont);
+			Assert.assertSame(GlyphMetrics.of(firstFont), GlyphMetrics.of(secondFont));
+			Assert.assertEquals(secondFont.getStringWidth("Boxable"),
+					GlyphMetrics.of(secondFont).getStringWidth("Boxable"), 0.0f);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingFont() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			FontProgramCache.load(doc, "fonts/missing.ttf");
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingPresubsetFont() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			FontProgramCache.load(doc, "fonts/missing.ttf", FontEmbedding.presubset("abc"));
+		}
+	}
+
+	@Test
+	public void testEmbeddings() throws IOException {
+		final String text = "Embedded with Boxable";
+		final int subset = saveAndReload(FontEmbedding.SUBSET, text);
+		final int full = saveAndReload(FontEmbedding.FULL, text);
+		final int presubset = saveAndReload(FontEmbedding.presubset("abcdefghijklmnopqrstuvwxyzBE "), text);
+		Assert.assertTrue(subset < presubset);
+		Assert.assertTrue(presubset < full);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCharacterOutsideOfPresubset() throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			FontUtils.getStringWidth(FontProgramCache.load(doc, FONT, FontEmbedding.presubset("abc")), "abcd", 10);
+		}
+	}
+
+	/**
+	 * @return size of the saved document
+	 */
+	private static int saveAndReload(final FontEmbedding embedding, final String text) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage();
+			doc.addPage(page);
+			try (PDPageContentStream stream = new PDPageContentStream(doc, page)) {
+				stream.beginText();
+				stream.setFont(FontUtils.loadFont(doc, FONT, embedding), 12);
+				stream.newLineAtOffset(50, 700);
+				stream.showText(text);
+				stream.endText();
+			}
+			doc.save(out);
+		}
+		try (PDDocument reloaded = PDDocument.load(out.toByteArray())) {
+			Assert.assertEquals(text, new PDFTextStripper().getText(reloaded).trim());
+			final BufferedImage image = new PDFRenderer(reloaded).renderImage(0);
+			Assert.assertTrue("Text is rendered", countDarkPixels(image) > 0);
+		}
+		return out.size();
+	}
+
+	private static int countDarkPixels(final BufferedImage image) {
+		int count = 0;
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				if ((image.getRGB(x, y) & 0xff) < 128) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testPresubsetRepertoire() {
+		Assert.assertEquals(FontEmbedding.presubset("abc"), FontEmbedding.presubset("cabba"));
+		Assert.assertEquals(FontEmbedding.presubset("abc").hashCode(), FontEmbedding.presubset("cba").hashCode());
+		Assert.assertNotEquals(FontEmbedding.presubset("abc"), FontEmbedding.presubset("abd"));
+		Assert.assertNotEquals(FontEmbedding.SUBSET, FontEmbedding.FULL);
+		Assert.assertNotEquals(FontEmbedding.FULL, FontEmbedding.presubset(""));
+	}
+}
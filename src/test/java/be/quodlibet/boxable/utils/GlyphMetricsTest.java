@@ -0,0 +1,96 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GlyphMetricsTest {
+
+	@Test
+	public void testSameWidthAsFont() throws Exception {
+		final String text = "The quick brown fox jumps over the lazy dog - 0123456789 éèü€";
+		for (final PDFont font : new PDFont[] { PDType1Font.HELVETICA, PDType1Font.TIMES_BOLD, PDType1Font.COURIER }) {
+			final GlyphMetrics metrics = GlyphMetrics.of(font);
+			Assert.assertSame(metrics, GlyphMetrics.of(font));
+			Assert.assertEquals(font.getStringWidth(text), metrics.getStringWidth(text), 0.0f);
+			Assert.assertEquals(font.getStringWidth("fox"), metrics.getStringWidth(text, 16, 19), 0.0f);
+		}
+	}
+
+	@Test
+	public void testVerticalMetricsPerFontInstance() throws Exception {
+		final PDFont helvetica = PDType1Font.HELVETICA;
+		final PDFont sameName = new PDType1Font(helvetica.getCOSObject());
+		Assert.assertEquals(helvetica.getName(), sameName.getName());
+		Assert.assertNotSame(GlyphMetrics.of(helvetica), GlyphMetrics.of(sameName));
+
+		final GlyphMetrics metrics = GlyphMetrics.of(helvetica);
+		final float xHeight = helvetica.getFontDescriptor().getXHeight() / 1000;
+		Assert.assertEquals(xHeight, metrics.getXHeight(), 0.0f);
+		Assert.assertEquals(helvetica.getFontDescriptor().getAscent() / 1000 - xHeight, metrics.getAscent(), 0.0f);
+		Assert.assertEquals(helvetica.getFontDescriptor().getDescent() / 1000, metrics.getDescent(), 0.0f);
+		Assert.assertEquals(metrics.getXHeight() + metrics.getAscent() - metrics.getDescent(), metrics.getHeight(),
+				0.0f);
+		Assert.assertEquals(helvetica.getAverageFontWidth(), metrics.getAverageWidth(), 0.0f);
+		Assert.assertEquals(metrics.getHeight() * 12, FontUtils.getHeight(helvetica, 12), 0.0f);
+	}
+
+	@Test
+	public void testPrecompiledStandard14Metrics() throws Exception {
+		for (final PDType1Font font : Standard14Metrics.FONTS) {
+			Assert.assertNotNull(font.getName(), Standard14Metrics.get(font));
+		}
+		Assert.assertNull(Standard14Metrics.get(new PDType1Font(PDType1Font.SYMBOL.getCOSObject())));
+
+		final PDFont symbol = PDType1Font.SYMBOL;
+		final String text = "\u03b1\u03b2\u03b3 \u2200\u2203";
+		Assert.assertEquals(symbol.getStringWidth(text), GlyphMetrics.of(symbol).getStringWidth(text), 0.0f);
+		Assert.assertEquals(symbol.getFontDescriptor().getDescent() / 1000, GlyphMetrics.of(symbol).getDescent(),
+				0.0f);
+	}
+
+	@Test
+	public void testPrecompiledMetricsAreCurrent() throws Exception {
+		final ByteArrayOutputStream generated = new ByteArrayOutputStream();
+		Standard14MetricsGenerator.generate(generated);
+		try (InputStream resource = Standard14Metrics.class.getResourceAsStream(Standard14Metrics.RESOURCE)) {
+			Assert.assertNotNull(resource);
+			Assert.assertArrayEquals("Regenerate " + Standard14Metrics.RESOURCE + " with Standard14MetricsGenerator",
+					generated.toByteArray(), IOUtils.toByteArray(resource));
+		}
+	}
+
+	@Test
+	public void testMetricsDontKeepFontOfClosedDocument() throws Exception {
+		final WeakReference<PDFont> font = measureInClosedDocument();
+		for (int i = 0; i < 50 && font.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertNull(font.get());
+	}
+
+	private static WeakReference<PDFont> measureInClosedDocument() throws Exception {
+		try (PDDocument doc = new PDDocument();
+				InputStream ttf = PDDocument.class.getResourceAsStream(
+						"/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf")) {
+			final PDFont font = PDType0Font.load(doc, ttf);
+			Assert.assertEquals(font.getStringWidth("Boxable"), GlyphMetrics.of(font).getStringWidth("Boxable"),
+					0.0f);
+			return new WeakReference<>(font);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGlyphNotInEncoding() throws Exception {
+		GlyphMetrics.of(PDType1Font.HELVETICA).getStringWidth("tab\there");
+	}
+}
@@ -0,0 +1,90 @@
+package be.quodlibet.boxable.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+/**
+ * <p>
+ * Writes the precompiled metrics of the Standard 14 fonts read by
+ * {@link Standard14Metrics}. The metrics are committed as a resource, run
+ * this tool with {@code src/main/resources} to regenerate them after
+ * upgrading PDFBox; {@code GlyphMetricsTest} fails while they are
+ * outdated. It is a build tool and doesn't ship with the library.
+ * </p>
+ */
+public final class Standard14MetricsGenerator {
+
+	private Standard14MetricsGenerator() {
+	}
+
+	/**
+	 * @param args
+	 *            resource directory, usually {@code src/main/resources}
+	 * @throws IOException
+	 *             If the metrics can't be written
+	 */
+	public static void main(final String[] args) throws IOException {
+		final File directory = new File(args[0], Standard14Metrics.class.getPackage().getName().replace('.', '/'));
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create " + directory);
+		}
+		try (OutputStream out = new BufferedOutputStream(
+				new FileOutputStream(new File(directory, Standard14Metrics.RESOURCE)))) {
+			generate(out);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Writes the metrics of all Standard 14 fonts in the format of
+	 * {@value Standard14Metrics#RESOURCE}.
+	 * </p>
+	 */
+	static void generate(final OutputStream out) throws IOException {
+		final Standard14Metrics[] metrics = new Standard14Metrics[Standard14Metrics.FONTS.length];
+		for (int i = 0; i < metrics.length; i++) {
+			metrics[i] = generate(Standard14Metrics.FONTS[i]);
+		}
+		final DataOutputStream data = new DataOutputStream(out);
+		Standard14Metrics.writeAll(metrics, data);
+		data.flush();
+	}
+
+	private static Standard14Metrics generate(final PDType1Font constant) throws IOException {
+		// the constants cache what they encoded before, a new instance measures only the font's own encoding
+		final PDType1Font font = new PDType1Font(constant.getCOSObject());
+		char[] codePoints = new char[256];
+		float[] widths = new float[256];
+		int count = 0;
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			if (Character.isSurrogate((char) c)) {
+				continue;
+			}
+			final float width;
+			try {
+				width = font.getStringWidth(String.valueOf((char) c));
+			} catch (final IllegalArgumentException e) {
+				// not available in the font's encoding
+				continue;
+			}
+			if (count == codePoints.length) {
+				codePoints = Arrays.copyOf(codePoints, count * 2);
+				widths = Arrays.copyOf(widths, count * 2);
+			}
+			codePoints[count] = (char) c;
+			widths[count] = width;
+			count++;
+		}
+		final PDFontDescriptor descriptor = font.getFontDescriptor();
+		return new Standard14Metrics(descriptor.getAscent(), descriptor.getDescent(), descriptor.getXHeight(),
+				font.getAverageFontWidth(), Arrays.copyOf(codePoints, count), Arrays.copyOf(widths, count));
+	}
+}
@@ -0,0 +1,43 @@
+package be.quodlibet.boxable.utils;
+
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
+import org.junit.Test;
+
+import be.quodlibet.boxable.ContentOperators;
+import be.quodlibet.boxable.page.PageContentStreamOptimized;
+
+public class TextRunWriterTest {
+
+	@Test
+	public void testAdjacentPiecesAreMerged() throws Exception {
+		try (PDDocument doc = new PDDocument()) {
+			final PDPage page = new PDPage();
+			doc.addPage(page);
+			final PDFont font = PDType1Font.HELVETICA;
+			try (PageContentStreamOptimized stream = new PageContentStreamOptimized(new PDPageContentStream(doc, page))) {
+				final TextRunWriter writer = new TextRunWriter(stream);
+				float x = writer.showText("Lorem ", font, 10, 50, 700);
+				x = writer.showText("ipsum", font, 10, x, 700);
+				writer.showText(" dolor", PDType1Font.HELVETICA_BOLD, 10, x, 700);
+				writer.showText("sit amet", font, 10, 50, 688);
+				writer.showText("consectetur", font, 10, 50, 676);
+				writer.end();
+			}
+			final List<String> operators = ContentOperators.of(page);
+			Assert.assertEquals(1, ContentOperators.count(operators, "BT"));
+			Assert.assertEquals(1, ContentOperators.count(operators, "ET"));
+			Assert.assertEquals(4, ContentOperators.count(operators, "Tj"));
+			Assert.assertEquals(3, ContentOperators.count(operators, "Tf"));
+			Assert.assertEquals(1, ContentOperators.count(operators, "Td"));
+			Assert.assertEquals(1, ContentOperators.count(operators, "TL"));
+			Assert.assertEquals(2, ContentOperators.count(operators, "T*"));
+		}
+	}
+}